@@ -0,0 +1,260 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.SystemClock;
+import androidx.room.DatabaseConfiguration;
+import androidx.room.InvalidationTracker;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import kr.apptimer.dagger.android.scheduler.SchedulerBackend;
+import kr.apptimer.dagger.android.task.TaskDescriptor;
+import kr.apptimer.database.LocalDatabase;
+import kr.apptimer.database.dao.InstalledApplicationDao;
+import kr.apptimer.database.dao.RemovalRequestDao;
+import kr.apptimer.database.dao.ScheduledAlarmDao;
+import kr.apptimer.database.data.InstalledApplication;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/***
+ * Submits a burst of package installations to {@link InstallIngestionPipeline} backed by a fake
+ * database and scheduler backend, and checks that every batch is written in one transaction and
+ * scheduled with one call.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InstallIngestionPipelineTest {
+
+  private static final int EVENT_COUNT = 500;
+
+  private static final int MAX_PACKAGES = 50;
+
+  private static final long TIMEOUT_SECONDS = 30;
+
+  /***
+   * Longer than the longest time a batch is held by debouncer
+   */
+  private static final long SETTLE_MILLIS = 3_000;
+
+  private final AtomicInteger transactions = new AtomicInteger();
+
+  private final AtomicInteger insertingTransactions = new AtomicInteger();
+
+  private final AtomicInteger insertCalls = new AtomicInteger();
+
+  private final AtomicInteger batchSchedules = new AtomicInteger();
+
+  private final AtomicInteger singleSchedules = new AtomicInteger();
+
+  private final Set<String> storedUris = new HashSet<>();
+
+  private final List<String> scheduledUris = new ArrayList<>();
+
+  private Context context;
+
+  private List<String> packageUris;
+
+  private CountDownLatch scheduled;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    packageUris = new ArrayList<>();
+    for (ApplicationInfo info : context.getPackageManager().getInstalledApplications(0)) {
+      packageUris.add("package:" + info.packageName);
+      if (packageUris.size() == MAX_PACKAGES) break;
+    }
+    assertFalse(packageUris.isEmpty());
+    scheduled = new CountDownLatch(packageUris.size());
+  }
+
+  @Test
+  public void burst_isWrittenAndScheduledOncePerBatch() throws Exception {
+    LocalDatabase database = createDatabase();
+    TaskScheduler scheduler = new TaskScheduler(createBackend());
+    NotificationHelper notificationHelper = new NotificationHelper(context);
+    DatabaseExecutor databaseExecutor = new DatabaseExecutor();
+    InstallIngestionPipeline pipeline =
+        new InstallIngestionPipeline(
+            context,
+            () -> database,
+            databaseExecutor,
+            () -> scheduler,
+            () -> notificationHelper);
+
+    // Same packages are broadcast again and again
+    for (int i = 0; i < EVENT_COUNT; i++) pipeline.submit(packageUris.get(i % packageUris.size()));
+
+    assertTrue(scheduled.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    SystemClock.sleep(SETTLE_MILLIS);
+    CountDownLatch drained = new CountDownLatch(1);
+    databaseExecutor.write(drained::countDown);
+    assertTrue(drained.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    assertEquals(transactions.get(), insertCalls.get());
+    assertEquals(insertingTransactions.get(), batchSchedules.get());
+    assertEquals(0, singleSchedules.get());
+    assertTrue(transactions.get() < EVENT_COUNT / 10);
+    // Replayed broadcasts are neither stored nor scheduled again
+    synchronized (scheduledUris) {
+      assertEquals(packageUris.size(), scheduledUris.size());
+      assertEquals(new HashSet<>(packageUris), new HashSet<>(scheduledUris));
+    }
+  }
+
+  private LocalDatabase createDatabase() {
+    InstalledApplicationDao dao =
+        (InstalledApplicationDao)
+            Proxy.newProxyInstance(
+                InstalledApplicationDao.class.getClassLoader(),
+                new Class<?>[] {InstalledApplicationDao.class},
+                (proxy, method, args) -> {
+                  switch (method.getName()) {
+                    case "deleteRemovedByPackageUris":
+                      return 0;
+                    case "insertAll":
+                      return insertAll((InstalledApplication[]) args[0]);
+                    default:
+                      throw new UnsupportedOperationException(method.getName());
+                  }
+                });
+    return new LocalDatabase() {
+      @Override
+      public InstalledApplicationDao installedApplicationDao() {
+        return dao;
+      }
+
+      @Override
+      public ScheduledAlarmDao scheduledAlarmDao() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public RemovalRequestDao removalRequestDao() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public <V> V runInTransaction(Callable<V> body) {
+        transactions.incrementAndGet();
+        int stored = storedUris.size();
+        try {
+          return body.call();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        } finally {
+          if (storedUris.size() > stored) insertingTransactions.incrementAndGet();
+        }
+      }
+
+      @Override
+      protected SupportSQLiteOpenHelper createOpenHelper(DatabaseConfiguration config) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      protected InvalidationTracker createInvalidationTracker() {
+        // Called by constructor, no table is observed
+        return new InvalidationTracker(this);
+      }
+
+      @Override
+      public void clearAllTables() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /***
+   * Stores applications by unique package uri, as {@link InstalledApplicationDao#insertAll} does
+   */
+  private long[] insertAll(InstalledApplication[] applications) {
+    insertCalls.incrementAndGet();
+    long[] ids = new long[applications.length];
+    for (int i = 0; i < applications.length; i++)
+      ids[i] = storedUris.add(applications[i].getPackageUri()) ? storedUris.size() : -1;
+    return ids;
+  }
+
+  private SchedulerBackend createBackend() {
+    return new SchedulerBackend() {
+      @Override
+      public void schedule(TaskDescriptor task) {
+        singleSchedules.incrementAndGet();
+      }
+
+      @Override
+      public void scheduleAll(List<TaskDescriptor> tasks) {
+        batchSchedules.incrementAndGet();
+        synchronized (scheduledUris) {
+          for (TaskDescriptor task : tasks) {
+            scheduledUris.add(task.getPackageUri());
+            scheduled.countDown();
+          }
+        }
+      }
+
+      @Override
+      public boolean cancel(String packageUri) {
+        return false;
+      }
+
+      @Override
+      public long getScheduledCount() {
+        return 0;
+      }
+
+      @Override
+      public long getWakeupCount() {
+        return 0;
+      }
+
+      @Override
+      public boolean isPersistent() {
+        return false;
+      }
+    };
+  }
+}
@@ -0,0 +1,156 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android.task;
+
+import static org.junit.Assert.*;
+
+import android.content.Intent;
+import android.os.Parcel;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/***
+ * Passes alarm intents written by {@link TaskDescriptor#writeTo(Intent)} through {@link Parcel},
+ * as alarm manager does, and reads them back with {@link TaskDescriptor#readFrom(Intent)}. Encode
+ * and decode time is measured by TaskDescriptorBenchmark of benchmark module.
+ */
+@SuppressWarnings("deprecation")
+@RunWith(AndroidJUnit4.class)
+public class TaskDescriptorTest {
+
+  private static final String PACKAGE_URI = "package:com.example.application";
+
+  private static final long DEADLINE = 1_700_000_000_000L;
+
+  private static final long LEAD = 24 * 60 * 60 * 1000L;
+
+  private static final int UNKNOWN_TYPE = 99;
+
+  @Test
+  public void removal_roundTrips() {
+    TaskDescriptor descriptor = TaskDescriptor.removal(PACKAGE_URI, DEADLINE);
+
+    TaskDescriptor read = TaskDescriptor.readFrom(roundTrip(write(descriptor)));
+    assertNotNull(read);
+    assertEquals(TaskDescriptor.TYPE_REMOVAL, read.getType());
+    assertEquals(PACKAGE_URI, read.getPackageUri());
+    assertEquals(DEADLINE, read.getDeadline());
+    assertEquals(descriptor.getKey(), read.getKey());
+  }
+
+  @Test
+  public void reminder_roundTripsWithLead() {
+    TaskDescriptor descriptor = TaskDescriptor.reminder(PACKAGE_URI, DEADLINE, LEAD);
+
+    TaskDescriptor read = TaskDescriptor.readFrom(roundTrip(write(descriptor)));
+    assertNotNull(read);
+    assertEquals(TaskDescriptor.TYPE_REMINDER, read.getType());
+    assertEquals(DEADLINE - LEAD, read.getDeadline());
+    assertEquals(DEADLINE, read.getRemovalDeadline());
+    assertEquals(TaskDescriptor.reminderKey(PACKAGE_URI, LEAD), read.getKey());
+  }
+
+  @Test
+  public void descriptor_isSmallerThanSerializedTask() {
+    String packageUri = PACKAGE_URI;
+    SerializableTask task = () -> packageUri.length();
+    Intent serialized = new Intent();
+    serialized.putExtra("task", task);
+
+    Intent written = write(TaskDescriptor.removal(PACKAGE_URI, DEADLINE));
+    assertTrue(sizeOf(written) < sizeOf(serialized));
+  }
+
+  @Test
+  public void readFrom_returnsNullWithoutDescriptor() {
+    assertNull(TaskDescriptor.readFrom(roundTrip(new Intent())));
+  }
+
+  @Test
+  public void readFrom_readsUnversionedIntent() {
+    // Registered before extras were versioned
+    Intent intent = write(TaskDescriptor.removal(PACKAGE_URI, DEADLINE));
+    intent.removeExtra(TaskDescriptor.EXTRA_VERSION);
+
+    TaskDescriptor read = TaskDescriptor.readFrom(roundTrip(intent));
+    assertNotNull(read);
+    assertEquals(PACKAGE_URI, read.getPackageUri());
+    assertEquals(DEADLINE, read.getDeadline());
+  }
+
+  @Test
+  public void readFrom_ignoresNewerVersion() {
+    Intent intent = write(TaskDescriptor.removal(PACKAGE_URI, DEADLINE));
+    intent.putExtra(TaskDescriptor.EXTRA_VERSION, TaskDescriptor.VERSION + 1);
+
+    assertNull(TaskDescriptor.readFrom(roundTrip(intent)));
+  }
+
+  @Test
+  public void unknownType_isReadAndRejectedByRegistry() {
+    TaskDescriptor read =
+        TaskDescriptor.readFrom(
+            roundTrip(write(new TaskDescriptor(UNKNOWN_TYPE, PACKAGE_URI, DEADLINE))));
+    assertNotNull(read);
+    assertEquals(UNKNOWN_TYPE, read.getType());
+
+    // Handlers of known types are never reached
+    TaskRegistry registry = new TaskRegistry(null, null);
+    assertFalse(registry.dispatch(read));
+  }
+
+  private static Intent write(TaskDescriptor descriptor) {
+    Intent intent = new Intent();
+    descriptor.writeTo(intent);
+    return intent;
+  }
+
+  private static Intent roundTrip(Intent intent) {
+    Parcel parcel = Parcel.obtain();
+    try {
+      intent.writeToParcel(parcel, 0);
+      parcel.setDataPosition(0);
+      return Intent.CREATOR.createFromParcel(parcel);
+    } finally {
+      parcel.recycle();
+    }
+  }
+
+  private static int sizeOf(Intent intent) {
+    Parcel parcel = Parcel.obtain();
+    try {
+      intent.writeToParcel(parcel, 0);
+      return parcel.dataSize();
+    } finally {
+      parcel.recycle();
+    }
+  }
+}
@@ -0,0 +1,334 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.database.migration;
+
+import static org.junit.Assert.*;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.room.Room;
+import androidx.room.migration.Migration;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.io.IOException;
+import kr.apptimer.database.LocalDatabase;
+import kr.apptimer.database.data.InstalledApplication;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/***
+ * Creates database from schema exported for each version and runs its migration with
+ * {@link MigrationTestHelper}, which validates schema after the step against the schema exported
+ * for next version.
+ * Whole chain of {@link LocalDatabaseMigrations#ALL} is run from version 1 as well.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LocalDatabaseMigrationsTest {
+
+  private static final String TEST_DATABASE = "migration-test";
+
+  private static final String PACKAGE_URI = "package:kr.apptimer.test";
+
+  private static final String LEGACY_PACKAGE_URI = "package:kr.apptimer.legacy";
+
+  private static final long DEADLINE = 1_700_000_000_000L;
+
+  private static final long INSTALLED_TIME = DEADLINE - 3 * 24 * 60 * 60 * 1000L;
+
+  @Rule
+  public MigrationTestHelper helper =
+      new MigrationTestHelper(InstrumentationRegistry.getInstrumentation(), LocalDatabase.class);
+
+  @Test
+  public void migrate1To2() throws IOException {
+    createVersion1Database();
+
+    SupportSQLiteDatabase db =
+        helper.runMigrationsAndValidate(
+            TEST_DATABASE, 2, true, LocalDatabaseMigrations.MIGRATION_1_2);
+    try (Cursor cursor =
+        db.query(
+            "SELECT `app_name` FROM `InstalledApplication` WHERE `package_uri` = ? ORDER BY `id`",
+            new Object[] {PACKAGE_URI})) {
+      // Package uri is not unique yet
+      assertEquals(2, cursor.getCount());
+      assertTrue(cursor.moveToLast());
+      assertEquals("test-2", cursor.getString(0));
+    }
+    db.close();
+  }
+
+  @Test
+  public void migrate2To3AddsScheduledAlarms() throws IOException {
+    SupportSQLiteDatabase db = helper.createDatabase(TEST_DATABASE, 2);
+    insertApplication(db, 1, "test");
+    db.close();
+
+    db =
+        helper.runMigrationsAndValidate(
+            TEST_DATABASE, 3, true, LocalDatabaseMigrations.MIGRATION_2_3);
+    ContentValues values = new ContentValues();
+    values.put("package_uri", PACKAGE_URI);
+    values.put("deadline", DEADLINE);
+    values.put("generation", 0);
+    // Request code is generated
+    assertEquals(1, db.insert("ScheduledAlarm", SQLiteDatabase.CONFLICT_FAIL, values));
+    // Alarm of a package is stored once
+    assertEquals(-1, db.insert("ScheduledAlarm", SQLiteDatabase.CONFLICT_IGNORE, values));
+    try (Cursor cursor = db.query("SELECT COUNT(*) FROM `InstalledApplication`")) {
+      assertTrue(cursor.moveToFirst());
+      assertEquals(1, cursor.getInt(0));
+    }
+    db.close();
+  }
+
+  @Test
+  public void migrate3To4KeepsLatestRowOfEachPackage() throws IOException {
+    SupportSQLiteDatabase db = helper.createDatabase(TEST_DATABASE, 3);
+    insertApplication(db, 1, "test");
+    insertApplication(db, 2, "test-2");
+    db.close();
+
+    db =
+        helper.runMigrationsAndValidate(
+            TEST_DATABASE, 4, true, LocalDatabaseMigrations.MIGRATION_3_4);
+    try (Cursor cursor = db.query("SELECT `id`, `app_name` FROM `InstalledApplication`")) {
+      assertEquals(1, cursor.getCount());
+      assertTrue(cursor.moveToFirst());
+      assertEquals(2, cursor.getInt(0));
+      assertEquals("test-2", cursor.getString(1));
+    }
+    // Replayed package event is ignored by unique package uri
+    assertEquals(-1, insertApplication(db, 3, "test-3", SQLiteDatabase.CONFLICT_IGNORE));
+    db.close();
+  }
+
+  @Test
+  public void migrate4To5AddsRemovalRequests() throws IOException {
+    SupportSQLiteDatabase db = helper.createDatabase(TEST_DATABASE, 4);
+    insertApplication(db, 1, "test");
+    db.close();
+
+    db =
+        helper.runMigrationsAndValidate(
+            TEST_DATABASE, 5, true, LocalDatabaseMigrations.MIGRATION_4_5);
+    ContentValues values = new ContentValues();
+    values.put("package_uri", PACKAGE_URI);
+    values.put("state", 0);
+    values.put("attempts", 0);
+    values.put("updated_at", DEADLINE);
+    db.insert("RemovalRequest", SQLiteDatabase.CONFLICT_FAIL, values);
+    // Request of a package is queued once
+    assertEquals(-1, db.insert("RemovalRequest", SQLiteDatabase.CONFLICT_IGNORE, values));
+    db.close();
+  }
+
+  @Test
+  public void migrate5To6SchedulesExistingRows() throws IOException {
+    SupportSQLiteDatabase db = helper.createDatabase(TEST_DATABASE, 5);
+    insertApplication(db, 1, "test");
+    db.close();
+
+    db =
+        helper.runMigrationsAndValidate(
+            TEST_DATABASE, 6, true, LocalDatabaseMigrations.MIGRATION_5_6);
+    try (Cursor cursor =
+        db.query("SELECT `state`, `next_attempt_at`, `attempts` FROM `InstalledApplication`")) {
+      assertTrue(cursor.moveToFirst());
+      assertEquals(InstalledApplication.STATE_SCHEDULED, cursor.getInt(0));
+      assertEquals(0, cursor.getLong(1));
+      assertEquals(0, cursor.getInt(2));
+    }
+    db.close();
+  }
+
+  @Test
+  public void migrate6To7MovesDeadlineOutOfInstallTime() throws IOException {
+    SupportSQLiteDatabase db = helper.createDatabase(TEST_DATABASE, 6);
+    insertApplication(db, 1, "test");
+    db.close();
+
+    db =
+        helper.runMigrationsAndValidate(
+            TEST_DATABASE, 7, true, LocalDatabaseMigrations.MIGRATION_6_7);
+    try (Cursor cursor =
+        db.query(
+            "SELECT `expiration_deadline`, `app_installed_time` FROM `InstalledApplication`")) {
+      assertTrue(cursor.moveToFirst());
+      // Deadline was stored as install time before version 7
+      assertEquals(DEADLINE, cursor.getLong(0));
+      // Install time is looked up again on first start
+      assertEquals(InstalledApplication.INSTALLED_TIME_UNKNOWN, cursor.getLong(1));
+    }
+    db.close();
+  }
+
+  @Test
+  public void migrateEachVersion() throws IOException {
+    createVersion1Database();
+
+    SupportSQLiteDatabase db = null;
+    for (Migration migration : LocalDatabaseMigrations.ALL) {
+      if (db != null) db.close();
+      db = helper.runMigrationsAndValidate(TEST_DATABASE, migration.endVersion, true, migration);
+    }
+
+    try (Cursor cursor =
+        db.query(
+            "SELECT `app_name`, `expiration_deadline`, `state`, `policy_type`,"
+                + " `app_installed_time` FROM `InstalledApplication`")) {
+      // Duplicated rows are collapsed to the latest one
+      assertEquals(1, cursor.getCount());
+      assertTrue(cursor.moveToFirst());
+      assertEquals("test-2", cursor.getString(0));
+      // Deadline was stored as install time before version 7
+      assertEquals(DEADLINE, cursor.getLong(1));
+      assertEquals(InstalledApplication.STATE_SCHEDULED, cursor.getInt(2));
+      assertEquals(InstalledApplication.POLICY_AFTER_INSTALL, cursor.getInt(3));
+      // Install time is looked up again on first start
+      assertEquals(InstalledApplication.INSTALLED_TIME_UNKNOWN, cursor.getLong(4));
+    }
+    db.close();
+  }
+
+  @Test
+  public void migrateAllAndOpenWithRoom() throws IOException {
+    createVersion1Database();
+
+    LocalDatabase database =
+        Room.databaseBuilder(
+                ApplicationProvider.getApplicationContext(), LocalDatabase.class, TEST_DATABASE)
+            .addMigrations(LocalDatabaseMigrations.ALL)
+            .allowMainThreadQueries()
+            .build();
+    helper.closeWhenFinished(database);
+
+    InstalledApplication application =
+        database.installedApplicationDao().findByPackageUri(PACKAGE_URI);
+    assertNotNull(application);
+    assertEquals("test-2", application.getName());
+    assertEquals(DEADLINE, application.getExpirationDeadline());
+    assertEquals(1, database.installedApplicationDao().findAll().size());
+    assertTrue(database.installedApplicationDao().existsByPackageUri(PACKAGE_URI));
+
+    // Looked up install time gives duration, deadline stays
+    database
+        .installedApplicationDao()
+        .updateUnknownInstalledTimeById(application.getId(), INSTALLED_TIME);
+    application = database.installedApplicationDao().findByPackageUri(PACKAGE_URI);
+    assertEquals(INSTALLED_TIME, application.getInstalledTime());
+    assertEquals(DEADLINE - INSTALLED_TIME, application.getDuration());
+    assertEquals(DEADLINE, application.getExpirationDeadline());
+
+    // Replayed package event is ignored by unique package uri
+    assertEquals(-1, database.installedApplicationDao().insert(application));
+    application.setName("test-3");
+    database.installedApplicationDao().upsert(application);
+    assertEquals(1, database.installedApplicationDao().findAll().size());
+    assertEquals(
+        "test-3", database.installedApplicationDao().findByPackageUri(PACKAGE_URI).getName());
+  }
+
+  @Test
+  public void migrateVersion7RowsToPolicy() throws IOException {
+    SupportSQLiteDatabase db = helper.createDatabase(TEST_DATABASE, 7);
+    insertVersion7Row(db, 1, PACKAGE_URI, INSTALLED_TIME);
+    insertVersion7Row(db, 2, LEGACY_PACKAGE_URI, InstalledApplication.INSTALLED_TIME_UNKNOWN);
+    db.close();
+
+    db =
+        helper.runMigrationsAndValidate(
+            TEST_DATABASE, 8, true, LocalDatabaseMigrations.MIGRATION_7_8);
+    try (Cursor cursor =
+        db.query(
+            "SELECT `policy_type`, `duration`, `expiration_deadline` FROM `InstalledApplication`"
+                + " ORDER BY `id`")) {
+      assertTrue(cursor.moveToFirst());
+      // Lasts as long as deadline was apart from install
+      assertEquals(InstalledApplication.POLICY_AFTER_INSTALL, cursor.getInt(0));
+      assertEquals(DEADLINE - INSTALLED_TIME, cursor.getLong(1));
+      assertEquals(DEADLINE, cursor.getLong(2));
+
+      assertTrue(cursor.moveToNext());
+      // Unknown install time keeps stored deadline until it is looked up
+      assertEquals(InstalledApplication.POLICY_AFTER_INSTALL, cursor.getInt(0));
+      assertEquals(0, cursor.getLong(1));
+      assertEquals(DEADLINE, cursor.getLong(2));
+    }
+    db.close();
+  }
+
+  private static void insertVersion7Row(
+      SupportSQLiteDatabase db, int id, String packageUri, long installedTime) {
+    ContentValues values = new ContentValues();
+    values.put("id", id);
+    values.put("package_uri", packageUri);
+    values.put("app_name", "test");
+    values.put("app_installed_time", installedTime);
+    values.put("expiration_deadline", DEADLINE);
+    values.put("state", InstalledApplication.STATE_SCHEDULED);
+    values.put("next_attempt_at", 0);
+    values.put("attempts", 0);
+    db.insert("InstalledApplication", SQLiteDatabase.CONFLICT_FAIL, values);
+  }
+
+  private static long insertApplication(SupportSQLiteDatabase db, int id, String name) {
+    return insertApplication(db, id, name, SQLiteDatabase.CONFLICT_FAIL);
+  }
+
+  private static long insertApplication(
+      SupportSQLiteDatabase db, int id, String name, int conflictAlgorithm) {
+    ContentValues values = new ContentValues();
+    values.put("id", id);
+    values.put("package_uri", PACKAGE_URI);
+    values.put("app_name", name);
+    values.put("app_installed_time", DEADLINE);
+    return db.insert("InstalledApplication", conflictAlgorithm, values);
+  }
+
+  private void createVersion1Database() throws IOException {
+    SupportSQLiteDatabase db = helper.createDatabase(TEST_DATABASE, 1);
+    ContentValues values = new ContentValues();
+    values.put("id", 1);
+    values.put("package_uri", PACKAGE_URI);
+    values.put("app_name", "test");
+    values.put("app_installed_time", DEADLINE);
+    db.insert("InstalledApplication", SQLiteDatabase.CONFLICT_FAIL, values);
+    values.put("id", 2);
+    values.put("app_name", "test-2");
+    db.insert("InstalledApplication", SQLiteDatabase.CONFLICT_FAIL, values);
+    db.close();
+  }
+}
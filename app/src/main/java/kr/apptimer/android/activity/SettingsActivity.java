@@ -37,6 +37,7 @@ import android.os.Bundle;
 import android.provider.Settings;
 
 import androidx.annotation.Nullable;
+import dagger.Lazy;
 import javax.inject.Inject;
 
 import kr.apptimer.android.service.AppExpirationOverlayService;
@@ -52,9 +53,9 @@ import kr.apptimer.database.LocalDatabase;
  */
 public final class SettingsActivity extends InjectedAppCompatActivity {
 
-  @Inject LocalDatabase database;
+  @Inject Lazy<LocalDatabase> database;
 
-  @Inject NotificationHelper notificationHelper;
+  @Inject Lazy<NotificationHelper> notificationHelper;
 
   @Override
   public void onActivityCreate(@Nullable Bundle savedInstanceState) {
@@ -32,33 +32,41 @@ package kr.apptimer.android.receiver;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import java.util.Calendar;
-import java.util.Date;
+import androidx.annotation.VisibleForTesting;
+import dagger.Lazy;
+import java.util.ArrayList;
 import java.util.List;
 import javax.inject.Inject;
 import kr.apptimer.base.InjectApplicationContext;
 import kr.apptimer.dagger.android.ApplicationRemovalExecutor;
+import kr.apptimer.dagger.android.DatabaseExecutor;
 import kr.apptimer.dagger.android.NotificationHelper;
 import kr.apptimer.dagger.android.TaskScheduler;
-import kr.apptimer.dagger.android.task.SerializableTask;
+import kr.apptimer.dagger.android.task.TaskDescriptor;
 import kr.apptimer.database.LocalDatabase;
+import kr.apptimer.database.dao.InstalledApplicationDao;
 import kr.apptimer.database.data.InstalledApplication;
+import kr.apptimer.database.utils.InstalledApplicationScanner;
 
 /***
  * Called by android when a device boots.
  * Searches {@link kr.apptimer.database.data.InstalledApplication} from {@link kr.apptimer.database.LocalDatabase} and re-schedule removal task to {@link kr.apptimer.dagger.android.TaskScheduler}
+ * Rows are read page by page on read lane of {@link DatabaseExecutor} inside {@link #goAsync()}.
+ * Alarms are stored by scheduler, so tasks are scheduled afterwards on write lane in one batch.
+ * Overdue applications are prompted even if backend keeps tasks across reboot.
  * @author Singlerr
  */
 public final class AlarmRestorer extends BroadcastReceiver {
 
-  @Inject
-  NotificationHelper helper;
+  @Inject Lazy<NotificationHelper> helper;
 
-  @Inject TaskScheduler scheduler;
+  @Inject Lazy<TaskScheduler> scheduler;
 
-  @Inject LocalDatabase database;
+  @Inject Lazy<LocalDatabase> database;
 
-  @Inject ApplicationRemovalExecutor removalExecutor;
+  @Inject Lazy<ApplicationRemovalExecutor> removalExecutor;
+
+  @Inject DatabaseExecutor databaseExecutor;
 
   public AlarmRestorer() {
     super();
@@ -67,27 +75,80 @@ public final class AlarmRestorer extends BroadcastReceiver {
 
   @Override
   public void onReceive(Context context, Intent intent) {
-
     if (intent.getAction().equals(Intent.ACTION_BOOT_COMPLETED)) {
-      List<InstalledApplication> reservedApplications =
-          database.installedApplicationDao().findAll();
-      Date currentTime = Calendar.getInstance().getTime();
-      for (InstalledApplication reservedApplication : reservedApplications) {
-        if (reservedApplication.getTime().before(currentTime))
-          handleOutdatedSchedule(reservedApplication);
-        else handleYetSchedule(reservedApplication);
-      }
+      PendingResult result = goAsync();
+      databaseExecutor.read(
+          () -> {
+            List<TaskDescriptor> tasks = new ArrayList<>();
+            // Backend may be created here, so it is asked off main thread
+            boolean rearm = scheduler.get().needsRestoreOnBoot();
+            try {
+              restore(tasks);
+            } finally {
+              // Backend keeps tasks across reboot by itself, overdue ones are still prompted
+              if (rearm)
+                databaseExecutor.write(
+                    () -> {
+                      try {
+                        scheduler.get().scheduleTasks(tasks);
+                      } finally {
+                        result.finish();
+                      }
+                    });
+              else result.finish();
+            }
+          });
     }
   }
 
-  private void handleOutdatedSchedule(InstalledApplication application) {
-    removalExecutor.requestRemoval(application.getPackageUri());
+  private void restore(List<TaskDescriptor> tasks) {
+    List<String> outdatedUris = new ArrayList<>();
+    collect(
+        database.get().installedApplicationDao(),
+        System.currentTimeMillis(),
+        tasks,
+        outdatedUris);
+    handleOutdatedSchedules(outdatedUris);
+  }
+
+  /***
+   * Collect removal tasks of applications due after {@param currentTime} into {@param tasks}, and
+   * package uris of applications due by then or being prompted into {@param outdatedUris}. Rows
+   * are read page by page, so at most one page of rows is held at a time.
+   *
+   * @param dao dao of installed applications
+   * @param currentTime time of boot in epoch millis
+   * @param tasks removal tasks to schedule again
+   * @param outdatedUris package uris whose removal must be prompted
+   * @return count of scanned rows
+   */
+  @VisibleForTesting
+  public static int collect(
+      InstalledApplicationDao dao,
+      long currentTime,
+      List<TaskDescriptor> tasks,
+      List<String> outdatedUris) {
+    // Removed applications need nothing
+    return InstalledApplicationScanner.scan(
+        dao::findActionablePageAfter,
+        InstalledApplicationScanner.DEFAULT_PAGE_SIZE,
+        reservedApplication -> {
+          int state = reservedApplication.getState();
+          // Prompt shown before reboot is lost
+          if (state == InstalledApplication.STATE_DUE
+              || state == InstalledApplication.STATE_PROMPTED
+              || reservedApplication.getRemovalDeadline() <= currentTime)
+            outdatedUris.add(reservedApplication.getPackageUri());
+          else tasks.add(toRemovalTask(reservedApplication));
+        });
+  }
+
+  private void handleOutdatedSchedules(List<String> packageUris) {
+    // Prompted one at a time instead of all at once
+    removalExecutor.get().requestRemovals(packageUris);
   }
 
-  private void handleYetSchedule(InstalledApplication application) {
-    scheduler.scheduleTask(
-        application.getPackageUri(),
-        (SerializableTask) () -> removalExecutor.requestRemoval(application.getPackageUri()),
-        application.getTime());
+  private static TaskDescriptor toRemovalTask(InstalledApplication application) {
+    return TaskDescriptor.removal(application.getPackageUri(), application.getRemovalDeadline());
   }
 }
@@ -29,39 +29,61 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package kr.apptimer.android.receiver;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
-import android.os.Build;
-import android.provider.Settings;
-
+import android.util.Log;
+import dagger.Lazy;
 import javax.inject.Inject;
-
-import kr.apptimer.android.service.AppExpirationOverlayService;
-import kr.apptimer.base.InjectApplicationContext;
-import kr.apptimer.dagger.android.NotificationHelper;
-import kr.apptimer.database.LocalDatabase;
+import kr.apptimer.BuildConfig;
+import kr.apptimer.dagger.android.InstallIngestionPipeline;
+import kr.apptimer.dagger.context.ApplicationContext;
+import kr.apptimer.utils.StartupTrace;
 
 /***
  * Receiver class for installing application
+ * Installed packages are handed to {@link InstallIngestionPipeline}, which batches bursts of
+ * installations. An update of tracked application keeps its timer, so
+ * {@link Intent#ACTION_PACKAGE_ADDED} with {@link Intent#EXTRA_REPLACING} is skipped and
+ * {@link Intent#ACTION_PACKAGE_REPLACED} only tracks package not stored yet.
  *
  * @author Singlerr
  */
-public final class ApplicationInstallationReceiver extends BroadcastReceiver {
+public final class ApplicationInstallationReceiver extends DeferredInjectionReceiver {
 
-  @Inject LocalDatabase database;
+  private static final String TAG = "ApplicationInstallationReceiver";
 
-  @Inject NotificationHelper notificationHelper;
+  public static final String TRACE_FIRST_RECEIVE = "ApplicationInstallationReceiver.onReceive";
 
-  public ApplicationInstallationReceiver() {
-    super();
-    InjectApplicationContext.getInstance().getContext().inject(this);
+  @Inject Lazy<InstallIngestionPipeline> ingestionPipeline;
+
+  @Override
+  protected void inject(ApplicationContext graph) {
+    graph.inject(this);
   }
 
   @Override
-  public void onReceive(Context context, Intent intent) {
-    if(intent.getAction().equals(Intent.ACTION_PACKAGE_ADDED)){
+  protected void handle(Context context, Intent intent) {
+    StartupTrace.getInstance().begin(TRACE_FIRST_RECEIVE);
+    try {
+      dispatch(intent);
+    } finally {
+      if (StartupTrace.getInstance().end(TRACE_FIRST_RECEIVE) && BuildConfig.DEBUG)
+        Log.i(TAG, StartupTrace.getInstance().dump());
     }
   }
+
+  private void dispatch(Intent intent) {
+    String action = intent.getAction();
+    if (action.equals(Intent.ACTION_PACKAGE_ADDED)) {
+      // ACTION_PACKAGE_REPLACED follows
+      if (intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)) return;
+    } else if (!action.equals(Intent.ACTION_PACKAGE_REPLACED)) return;
+
+    Uri packageUri = intent.getData();
+    if (packageUri == null) return;
+
+    // Package already stored is ignored by pipeline
+    ingestionPipeline.get().submit(packageUri.toString());
+  }
 }
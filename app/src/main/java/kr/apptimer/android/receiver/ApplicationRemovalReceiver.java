@@ -0,0 +1,103 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.android.receiver;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.util.Log;
+import dagger.Lazy;
+import javax.inject.Inject;
+import kr.apptimer.dagger.android.ApplicationRemovalExecutor;
+import kr.apptimer.dagger.android.DatabaseExecutor;
+import kr.apptimer.dagger.android.TaskScheduler;
+import kr.apptimer.dagger.context.ApplicationContext;
+import kr.apptimer.database.LocalDatabase;
+
+/***
+ * Receiver class for removed application
+ * Deletes {@link kr.apptimer.database.data.InstalledApplication} of removed package and cancels
+ * its scheduled task, so that restore and execution do not work on applications no longer
+ * installed. Application whose removal was due is kept and marked removed instead.
+ * Removal as part of an update ({@link Intent#EXTRA_REPLACING}) is ignored.
+ *
+ * @author Singlerr
+ */
+public final class ApplicationRemovalReceiver extends DeferredInjectionReceiver {
+
+  private static final String TAG = "ApplicationRemoval";
+
+  @Inject Lazy<TaskScheduler> scheduler;
+
+  @Inject Lazy<LocalDatabase> database;
+
+  @Inject DatabaseExecutor databaseExecutor;
+
+  @Inject Lazy<ApplicationRemovalExecutor> removalExecutor;
+
+  @Override
+  protected void inject(ApplicationContext graph) {
+    graph.inject(this);
+  }
+
+  @Override
+  protected void handle(Context context, Intent intent) {
+    String action = intent.getAction();
+    if (!action.equals(Intent.ACTION_PACKAGE_REMOVED)
+        && !action.equals(Intent.ACTION_PACKAGE_FULLY_REMOVED)) return;
+    // Application is being updated, not removed
+    if (intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)) return;
+
+    Uri packageUri = intent.getData();
+    if (packageUri == null) return;
+
+    String uri = packageUri.toString();
+    PendingResult result = goAsync();
+    databaseExecutor.write(
+        () -> {
+          try {
+            remove(uri);
+          } finally {
+            result.finish();
+          }
+        });
+  }
+
+  private void remove(String packageUri) {
+    // Both REMOVED and FULLY_REMOVED arrive for one removal, second one finds nothing.
+    // Row of application whose removal was due is kept as removed.
+    int deleted = database.get().installedApplicationDao().deleteScheduledByPackageUri(packageUri);
+    boolean cancelled = scheduler.get().cancelTask(packageUri);
+    // Lets queued uninstall prompts move on and marks removal done
+    removalExecutor.get().onPackageRemoved(packageUri);
+    if (deleted > 0 || cancelled)
+      Log.i(TAG, "Forgot " + packageUri + "{rows=" + deleted + ", cancelled=" + cancelled + "}");
+  }
+}
@@ -0,0 +1,73 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.android.receiver;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import kr.apptimer.base.InjectApplicationContext;
+import kr.apptimer.dagger.context.ApplicationContext;
+
+/***
+ * {@link BroadcastReceiver} injected on its first broadcast instead of on construction, so that
+ * receivers created in {@link android.app.Application#onCreate()} do not build dagger graph there.
+ * Receivers registered without a handler receive broadcasts on main thread, so injection happens
+ * once without locking.
+ *
+ * @author Singlerr
+ */
+public abstract class DeferredInjectionReceiver extends BroadcastReceiver {
+
+  private boolean injected;
+
+  @Override
+  public final void onReceive(Context context, Intent intent) {
+    if (!injected) {
+      inject(InjectApplicationContext.getInstance().getContext());
+      injected = true;
+    }
+    handle(context, intent);
+  }
+
+  /***
+   * Inject members of this receiver from {@param graph}
+   *
+   * @param graph dagger graph of application
+   */
+  protected abstract void inject(ApplicationContext graph);
+
+  /***
+   * Same as {@link #onReceive(Context, Intent)}, called after members are injected
+   *
+   * @param context context in which receiver is running
+   * @param intent received intent
+   */
+  protected abstract void handle(Context context, Intent intent);
+}
@@ -0,0 +1,69 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.android.receiver;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageInstaller;
+import dagger.Lazy;
+import javax.inject.Inject;
+import kr.apptimer.dagger.android.ApplicationRemovalExecutor;
+import kr.apptimer.dagger.context.ApplicationContext;
+
+/***
+ * Receives result of uninstall requested through {@link PackageInstaller} and hands it to
+ * {@link ApplicationRemovalExecutor}, which then prompts next queued removal.
+ *
+ * @author Singlerr
+ */
+public final class RemovalResultReceiver extends DeferredInjectionReceiver {
+
+  @Inject Lazy<ApplicationRemovalExecutor> removalExecutor;
+
+  @Override
+  protected void inject(ApplicationContext graph) {
+    graph.inject(this);
+  }
+
+  @Override
+  protected void handle(Context context, Intent intent) {
+    if (!ApplicationRemovalExecutor.ACTION_REMOVAL_RESULT.equals(intent.getAction())) return;
+    String packageUri = intent.getStringExtra(ApplicationRemovalExecutor.EXTRA_PACKAGE_URI);
+    if (packageUri == null) return;
+
+    removalExecutor
+        .get()
+        .onResult(
+            packageUri,
+            intent.getIntExtra(PackageInstaller.EXTRA_STATUS, PackageInstaller.STATUS_FAILURE),
+            intent.getStringExtra(PackageInstaller.EXTRA_STATUS_MESSAGE),
+            intent.getParcelableExtra(Intent.EXTRA_INTENT));
+  }
+}
@@ -30,31 +30,96 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package kr.apptimer.android.service;
 
 import android.app.Service;
-import android.content.Context;
 import android.content.Intent;
+import android.content.res.Configuration;
+import android.os.Handler;
 import android.os.IBinder;
-import android.view.LayoutInflater;
+import android.os.Looper;
 import android.view.View;
 import android.view.WindowManager;
+import android.widget.CheckBox;
+import android.widget.TextView;
 import androidx.annotation.Nullable;
+import dagger.Lazy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
+import kr.apptimer.R;
 import kr.apptimer.base.InjectApplicationContext;
+import kr.apptimer.dagger.android.DatabaseExecutor;
+import kr.apptimer.dagger.android.ExpirationPolicyEngine;
 import kr.apptimer.dagger.android.OverlayViewModel;
+import kr.apptimer.dagger.android.OverlayViewPool;
+import kr.apptimer.database.LocalDatabase;
+import kr.apptimer.database.data.InstalledApplication;
 
 /***
  * Android service class for showing setting overlay In the overlay, user can
  * set how long an installed application will last.
+ * The overlay view comes from {@link OverlayViewPool} and is added to window once per service.
+ * It is shown and hidden by visibility and bound to each {@link InstalledApplication} without
+ * inflation. Service stops itself after {@link #IDLE_TIMEOUT_MILLIS} without a prompt.
+ * Prompts arriving while one is shown are queued and shown one after another. A duration chosen
+ * with "apply to all" is stored for every queued application by one batched write.
+ * Duration counts from install, or from last use if user asks so. Deadlines are derived by
+ * {@link ExpirationPolicyEngine}.
  *
  * @author Singlerr
  */
 public final class AppExpirationOverlayService extends Service {
 
+  /***
+   * Package uris of newly installed applications to set expiration for
+   */
+  public static final String EXTRA_PACKAGE_URIS = "package_uris";
+
+  private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
   @Inject OverlayViewModel viewModel;
 
+  @Inject OverlayViewPool viewPool;
+
+  @Inject Lazy<LocalDatabase> database;
+
+  @Inject DatabaseExecutor databaseExecutor;
+
+  @Inject Lazy<ExpirationPolicyEngine> policyEngine;
+
+  private final Handler handler = new Handler(Looper.getMainLooper());
+
+  private final Runnable stopWhenIdle = this::stopSelf;
+
   private WindowManager windowManager;
 
   private View view;
 
+  private WindowManager.LayoutParams appliedParams;
+
+  private TextView nameView;
+
+  private TextView pendingCountView;
+
+  private CheckBox applyAllView;
+
+  private CheckBox countFromLastUseView;
+
+  /***
+   * Package uris waiting to be shown, in arrival order
+   */
+  private final ArrayDeque<String> pendingUris = new ArrayDeque<>();
+
+  /***
+   * Application shown in overlay, null if hidden
+   */
+  private InstalledApplication boundApplication;
+
+  /***
+   * Whether next application is being read from database
+   */
+  private boolean loading;
+
   @Nullable
   @Override
   public IBinder onBind(Intent intent) {
@@ -66,21 +131,162 @@ public final class AppExpirationOverlayService extends Service {
     super.onCreate();
     InjectApplicationContext.getInstance().getContext().inject(this);
 
-    LayoutInflater inflater = (LayoutInflater) getSystemService(Context.LAYOUT_INFLATER_SERVICE);
     windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
 
-    view = inflater.inflate(viewModel.getLayoutId(), null);
+    view = viewPool.acquire();
+    nameView = view.findViewById(R.id.overlay_app_name);
+    pendingCountView = view.findViewById(R.id.overlay_pending_count);
+    applyAllView = view.findViewById(R.id.overlay_apply_all);
+    countFromLastUseView = view.findViewById(R.id.overlay_count_from_last_use);
+    bindDuration(R.id.overlay_duration_1d, TimeUnit.DAYS.toMillis(1));
+    bindDuration(R.id.overlay_duration_3d, TimeUnit.DAYS.toMillis(3));
+    bindDuration(R.id.overlay_duration_7d, TimeUnit.DAYS.toMillis(7));
+    // Keep default expiration
+    view.findViewById(R.id.overlay_close).setOnClickListener(v -> showNext());
 
-    windowManager.addView(view, viewModel.getLayoutParams());
+    view.setVisibility(View.GONE);
+    appliedParams = getLayoutParams();
+    windowManager.addView(view, appliedParams);
+  }
+
+  @Override
+  public int onStartCommand(Intent intent, int flags, int startId) {
+    handler.removeCallbacks(stopWhenIdle);
+    String[] packageUris = intent == null ? null : intent.getStringArrayExtra(EXTRA_PACKAGE_URIS);
+    if (packageUris == null || packageUris.length == 0) {
+      if (boundApplication == null) handler.postDelayed(stopWhenIdle, IDLE_TIMEOUT_MILLIS);
+      return START_NOT_STICKY;
+    }
+
+    for (String packageUri : packageUris) {
+      if (boundApplication != null && boundApplication.getPackageUri().equals(packageUri))
+        continue;
+      if (!pendingUris.contains(packageUri)) pendingUris.add(packageUri);
+    }
+    if (boundApplication == null && !loading) showNext();
+    else if (boundApplication != null) bindPendingCount();
+    return START_NOT_STICKY;
+  }
+
+  @Override
+  public void onConfigurationChanged(Configuration newConfig) {
+    super.onConfigurationChanged(newConfig);
+    if (view != null) applyLayoutParams();
   }
 
   @Override
   public void onDestroy() {
     super.onDestroy();
+    handler.removeCallbacksAndMessages(null);
     if (windowManager == null || view == null) return;
 
+    // Pooled view must not keep this service
+    unbindListeners();
     windowManager.removeView(view);
     windowManager = null;
     view = null;
+    appliedParams = null;
+    nameView = null;
+    pendingCountView = null;
+    applyAllView = null;
+    countFromLastUseView = null;
+  }
+
+  /***
+   * Show next queued application, or hide overlay if queue is empty
+   */
+  private void showNext() {
+    String packageUri = pendingUris.poll();
+    if (packageUri == null) {
+      hide();
+      return;
+    }
+    boundApplication = null;
+    loading = true;
+    databaseExecutor.read(
+        () -> {
+          InstalledApplication application =
+              database.get().installedApplicationDao().findByPackageUri(packageUri);
+          handler.post(() -> show(application));
+        });
+  }
+
+  private void show(InstalledApplication application) {
+    loading = false;
+    if (view == null) return;
+    // Removed before it was shown
+    if (application == null) {
+      showNext();
+      return;
+    }
+    boundApplication = application;
+    nameView.setText(application.getName());
+    applyAllView.setChecked(false);
+    countFromLastUseView.setChecked(false);
+    bindPendingCount();
+    view.setVisibility(View.VISIBLE);
+    applyLayoutParams();
+  }
+
+  private WindowManager.LayoutParams getLayoutParams() {
+    return viewModel.getLayoutParams(getResources().getConfiguration());
+  }
+
+  /***
+   * Update window only if display changed since params were applied
+   */
+  private void applyLayoutParams() {
+    WindowManager.LayoutParams params = getLayoutParams();
+    if (params == appliedParams) return;
+    appliedParams = params;
+    windowManager.updateViewLayout(view, params);
+  }
+
+  private void bindPendingCount() {
+    int pending = pendingUris.size();
+    int visibility = pending == 0 ? View.GONE : View.VISIBLE;
+    pendingCountView.setVisibility(visibility);
+    applyAllView.setVisibility(visibility);
+    if (pending > 0) pendingCountView.setText(getString(R.string.overlay_pending_count, pending));
+  }
+
+  private void hide() {
+    boundApplication = null;
+    view.setVisibility(View.GONE);
+    handler.postDelayed(stopWhenIdle, IDLE_TIMEOUT_MILLIS);
+  }
+
+  private void bindDuration(int id, long duration) {
+    view.findViewById(id).setOnClickListener(v -> choose(duration));
+  }
+
+  private void unbindListeners() {
+    view.findViewById(R.id.overlay_duration_1d).setOnClickListener(null);
+    view.findViewById(R.id.overlay_duration_3d).setOnClickListener(null);
+    view.findViewById(R.id.overlay_duration_7d).setOnClickListener(null);
+    view.findViewById(R.id.overlay_close).setOnClickListener(null);
+  }
+
+  private void choose(long duration) {
+    InstalledApplication application = boundApplication;
+    if (application == null) return;
+    int policyType =
+        countFromLastUseView.isChecked()
+            ? InstalledApplication.POLICY_AFTER_LAST_USE
+            : InstalledApplication.POLICY_AFTER_INSTALL;
+
+    if (!applyAllView.isChecked() || pendingUris.isEmpty()) {
+      // Single row update and heap adjustment
+      policyEngine.get().changePolicy(application.getPackageUri(), policyType, duration);
+      showNext();
+      return;
+    }
+
+    List<String> packageUris = new ArrayList<>(pendingUris.size() + 1);
+    packageUris.add(application.getPackageUri());
+    packageUris.addAll(pendingUris);
+    pendingUris.clear();
+    hide();
+    policyEngine.get().changePolicies(packageUris, policyType, duration);
   }
 }
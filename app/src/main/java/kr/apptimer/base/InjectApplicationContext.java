@@ -33,40 +33,106 @@ import android.app.Application;
 import android.content.BroadcastReceiver;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.os.Looper;
+import android.util.Log;
 
+import kr.apptimer.BuildConfig;
 import kr.apptimer.android.receiver.ApplicationInstallationReceiver;
+import kr.apptimer.android.receiver.ApplicationRemovalReceiver;
+import kr.apptimer.android.receiver.RemovalResultReceiver;
+import kr.apptimer.dagger.android.ApplicationRemovalExecutor;
 import kr.apptimer.dagger.context.ApplicationContext;
 import kr.apptimer.dagger.context.DaggerApplicationContext;
+import kr.apptimer.utils.StartupTrace;
 import lombok.Getter;
 
 /***
  * This context lives in lifecycle
+ * Dagger graph is built on first use and its heavy singletons are reached through
+ * {@link dagger.Lazy}, so {@link #onCreate()} only registers receivers. Receivers are injected on
+ * their first broadcast, see {@link kr.apptimer.android.receiver.DeferredInjectionReceiver}.
+ * Database is opened and overlay view is inflated once main thread becomes idle.
  *
  * @author Singlerr
  */
 public final class InjectApplicationContext extends Application {
 
+  private static final String TAG = "StartupTrace";
+
+  public static final String TRACE_ON_CREATE = "Application.onCreate";
+
+  public static final String TRACE_GRAPH = "DaggerApplicationContext.create";
 
   private BroadcastReceiver appInstallationReceiver;
 
+  private BroadcastReceiver appRemovalReceiver;
+
+  private BroadcastReceiver removalResultReceiver;
+
   @Getter private static InjectApplicationContext instance;
 
-  @Getter private final ApplicationContext context = DaggerApplicationContext.create();
+  private volatile ApplicationContext context;
 
   public InjectApplicationContext() {
 
     instance = this;
   }
 
+  /***
+   * Returns dagger graph of application, building it on first call
+   *
+   * @return dagger graph
+   */
+  public ApplicationContext getContext() {
+    ApplicationContext context = this.context;
+    if (context != null) return context;
+    synchronized (this) {
+      if (this.context == null) {
+        StartupTrace.getInstance().begin(TRACE_GRAPH);
+        this.context = DaggerApplicationContext.create();
+        StartupTrace.getInstance().end(TRACE_GRAPH);
+      }
+      return this.context;
+    }
+  }
+
   @Override
   public void onCreate() {
+    StartupTrace.getInstance().begin(TRACE_ON_CREATE);
     super.onCreate();
-    appInstallationReceiver = registerReceiver();
+    appInstallationReceiver =
+        registerReceiver(
+            new ApplicationInstallationReceiver(),
+            Intent.ACTION_PACKAGE_ADDED,
+            Intent.ACTION_PACKAGE_REPLACED);
+    appRemovalReceiver =
+        registerReceiver(
+            new ApplicationRemovalReceiver(),
+            Intent.ACTION_PACKAGE_REMOVED,
+            Intent.ACTION_PACKAGE_FULLY_REMOVED);
+    removalResultReceiver = new RemovalResultReceiver();
+    registerReceiver(
+        removalResultReceiver, new IntentFilter(ApplicationRemovalExecutor.ACTION_REMOVAL_RESULT));
+    // Deferred until first frame is drawn
+    Looper.myQueue()
+        .addIdleHandler(
+            () -> {
+              onIdle();
+              return false;
+            });
+    StartupTrace.getInstance().end(TRACE_ON_CREATE);
+    if (BuildConfig.DEBUG) Log.i(TAG, StartupTrace.getInstance().dump());
+  }
+
+  private void onIdle() {
+    // Packages removed while app was not running, also opens database on write lane
+    getContext().packageReconciler().reconcileAsync();
+    getContext().overlayViewPool().acquire();
   }
-  private BroadcastReceiver registerReceiver(){
-    BroadcastReceiver receiver = new ApplicationInstallationReceiver();
+
+  private BroadcastReceiver registerReceiver(BroadcastReceiver receiver, String... actions){
     IntentFilter filter = new IntentFilter();
-    filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+    for (String action : actions) filter.addAction(action);
     filter.addDataScheme("package");
 
     registerReceiver(receiver,filter);
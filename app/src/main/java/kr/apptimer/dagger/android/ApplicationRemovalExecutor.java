@@ -29,36 +29,356 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package kr.apptimer.dagger.android;
 
+import android.annotation.SuppressLint;
+import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.PackageInstaller;
 import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+import dagger.Lazy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import kr.apptimer.dagger.android.task.TaskDescriptor;
+import kr.apptimer.database.LocalDatabase;
+import kr.apptimer.database.dao.InstalledApplicationDao;
+import kr.apptimer.database.dao.RemovalRequestDao;
+import kr.apptimer.database.data.InstalledApplication;
+import kr.apptimer.database.data.RemovalRequest;
 
 /***
  * Call {@link android.content.Intent} to request removing android application(package).
  * Can be injected into other classes by dagger.
+ * Requests are queued in {@link RemovalRequest} table and prompted one at a time, at least
+ * {@link #PROMPT_INTERVAL_MILLIS} apart. Next prompt waits for result of the previous one, which
+ * arrives from {@link PackageInstaller} as {@link #ACTION_REMOVAL_RESULT}, or from
+ * {@link Intent#ACTION_PACKAGE_REMOVED} below android O. Android asks confirmation of each package
+ * separately for apps without system privilege, so a batch cannot share one confirmation.
+ * Queue state is only touched on write lane of {@link DatabaseExecutor}.
+ * State of {@link InstalledApplication} follows the queue. A declined or failed prompt defers
+ * removal by {@link #getRetryDelay(int)}, doubling with each attempt.
+ * Applications used since their deadline was computed are left to
+ * {@link ExpirationPolicyEngine#postponeUsed(List)} instead of being queued.
  * @author Singlerr
  */
 @Singleton
 public final class ApplicationRemovalExecutor {
 
+  private static final String TAG = "ApplicationRemoval";
+
+  /***
+   * Action of broadcast carrying result of uninstall from {@link PackageInstaller}
+   */
+  public static final String ACTION_REMOVAL_RESULT = "kr.apptimer.action.REMOVAL_RESULT";
+
+  public static final String EXTRA_PACKAGE_URI = "package_uri";
+
+  private static final long PROMPT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(3);
+
+  /***
+   * Prompt without result is counted as failure after this time
+   */
+  private static final long RESULT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+  /***
+   * Count of package uris bound to one update statement. SQLite allows 999 variables.
+   */
+  private static final int UPDATE_CHUNK_SIZE = 500;
+
+  private static final long BASE_RETRY_DELAY_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.DAYS.toMillis(7);
+
   private Context context;
 
+  private final Lazy<LocalDatabase> database;
+
+  private final DatabaseExecutor databaseExecutor;
+
+  private final Lazy<TaskScheduler> scheduler;
+
+  private final Lazy<ExpirationPolicyEngine> policyEngine;
+
+  private final ScheduledExecutorService timer;
+
+  // Fields below are only touched on write lane
+
+  private boolean recovered;
+
+  /***
+   * Package uri of request prompted now, null if none
+   */
+  private String current;
+
+  private long promptSequence;
+
+  private long nextPromptAt;
+
+  private boolean pumpScheduled;
+
   @Inject
-  public ApplicationRemovalExecutor(Context context) {
+  public ApplicationRemovalExecutor(
+      Context context,
+      Lazy<LocalDatabase> database,
+      DatabaseExecutor databaseExecutor,
+      Lazy<TaskScheduler> scheduler,
+      Lazy<ExpirationPolicyEngine> policyEngine) {
     this.context = context;
+    this.database = database;
+    this.databaseExecutor = databaseExecutor;
+    this.scheduler = scheduler;
+    this.policyEngine = policyEngine;
+    this.timer =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "removal-timer");
+              thread.setDaemon(true);
+              return thread;
+            });
   }
 
   public void requestRemoval(String packageUri) {
-    requestRemoval(Uri.parse(packageUri));
+    requestRemovals(Collections.singletonList(packageUri));
   }
 
   public void requestRemoval(Uri uri) {
-    requestRemoval(context, new Intent(Intent.ACTION_DELETE, uri));
+    requestRemoval(uri.toString());
+  }
+
+  /***
+   * Queue removal of every application of {@param packageUris}. Requests already queued are kept,
+   * failed ones are queued again. Safe to call on main thread.
+   *
+   * @param packageUris package uris of applications
+   */
+  public void requestRemovals(List<String> packageUris) {
+    if (packageUris.isEmpty()) return;
+    List<String> copy = new ArrayList<>(packageUris);
+    databaseExecutor.write(() -> enqueue(copy));
+  }
+
+  /***
+   * Called with result of uninstall delivered by {@link PackageInstaller}
+   *
+   * @param packageUri package uri of application
+   * @param status one of STATUS_ constants of {@link PackageInstaller}
+   * @param message status message, may be null
+   * @param confirmation activity to start if {@param status} asks user action, may be null
+   */
+  public void onResult(String packageUri, int status, String message, Intent confirmation) {
+    databaseExecutor.write(() -> handleResult(packageUri, status, message, confirmation));
+  }
+
+  /***
+   * Called when application of {@param packageUri} was removed, by any means
+   *
+   * @param packageUri package uri of application
+   */
+  public void onPackageRemoved(String packageUri) {
+    databaseExecutor.write(() -> succeed(packageUri));
+  }
+
+  /***
+   * Returns delay before removal declined {@param attempts} times is due again
+   *
+   * @param attempts count of declined prompts, at least 1
+   * @return delay in millis
+   */
+  public static long getRetryDelay(int attempts) {
+    int shift = Math.min(Math.max(attempts - 1, 0), 30);
+    return Math.min(BASE_RETRY_DELAY_MILLIS << shift, MAX_RETRY_DELAY_MILLIS);
+  }
+
+  private RemovalRequestDao dao() {
+    return database.get().removalRequestDao();
+  }
+
+  private InstalledApplicationDao applicationDao() {
+    return database.get().installedApplicationDao();
+  }
+
+  private void enqueue(List<String> dueUris) {
+    List<String> packageUris = policyEngine.get().postponeUsed(dueUris);
+    if (packageUris.isEmpty()) return;
+    long now = System.currentTimeMillis();
+    RemovalRequest[] requests = new RemovalRequest[packageUris.size()];
+    for (int i = 0; i < requests.length; i++) {
+      RemovalRequest request = new RemovalRequest();
+      request.setPackageUri(packageUris.get(i));
+      request.setState(RemovalRequest.STATE_PENDING);
+      request.setUpdatedAt(now);
+      requests[i] = request;
+    }
+    RemovalRequestDao dao = dao();
+    InstalledApplicationDao applicationDao = applicationDao();
+    database
+        .get()
+        .runInTransaction(
+            () -> {
+              dao.insertAll(requests);
+              for (int from = 0; from < packageUris.size(); from += UPDATE_CHUNK_SIZE) {
+                List<String> chunk =
+                    packageUris.subList(
+                        from, Math.min(from + UPDATE_CHUNK_SIZE, packageUris.size()));
+                dao.updateStates(
+                    chunk, RemovalRequest.STATE_FAILED, RemovalRequest.STATE_PENDING, now);
+                applicationDao.markDue(chunk);
+              }
+            });
+    pump();
+  }
+
+  /***
+   * Prompt oldest pending request if nothing is prompted and interval has passed
+   */
+  private void pump() {
+    if (current != null) return;
+    RemovalRequestDao dao = dao();
+    if (!recovered) {
+      recovered = true;
+      // Results of prompts shown before process death are lost
+      dao.updateAllStates(RemovalRequest.STATE_PROMPTED, RemovalRequest.STATE_PENDING);
+    }
+
+    long now = System.currentTimeMillis();
+    if (nextPromptAt > now) {
+      schedulePump(nextPromptAt - now);
+      return;
+    }
+    RemovalRequest request = dao.findOldestByState(RemovalRequest.STATE_PENDING);
+    if (request == null) return;
+
+    request.setState(RemovalRequest.STATE_PROMPTED);
+    request.setAttempts(request.getAttempts() + 1);
+    request.setUpdatedAt(now);
+    dao.update(request);
+
+    String packageUri = request.getPackageUri();
+    applicationDao().updateStateByPackageUri(packageUri, InstalledApplication.STATE_PROMPTED);
+    current = packageUri;
+    long sequence = ++promptSequence;
+    timer.schedule(
+        () ->
+            databaseExecutor.write(
+                () -> {
+                  if (sequence == promptSequence && packageUri.equals(current))
+                    fail(packageUri, "No result within " + RESULT_TIMEOUT_MILLIS + "ms");
+                }),
+        RESULT_TIMEOUT_MILLIS,
+        TimeUnit.MILLISECONDS);
+
+    try {
+      prompt(packageUri);
+    } catch (RuntimeException e) {
+      fail(packageUri, e.toString());
+    }
+  }
+
+  private void schedulePump(long delay) {
+    if (pumpScheduled) return;
+    pumpScheduled = true;
+    timer.schedule(
+        () ->
+            databaseExecutor.write(
+                () -> {
+                  pumpScheduled = false;
+                  pump();
+                }),
+        delay,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @SuppressLint({"InlinedApi", "NewApi"})
+  private void prompt(String packageUri) {
+    Uri uri = Uri.parse(packageUri);
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+      // Uninstalling through PackageInstaller needs REQUEST_DELETE_PACKAGES of android O
+      requestRemoval(context, new Intent(Intent.ACTION_DELETE, uri));
+      return;
+    }
+    Intent result =
+        new Intent(ACTION_REMOVAL_RESULT)
+            .setPackage(context.getPackageName())
+            .putExtra(EXTRA_PACKAGE_URI, packageUri);
+    // Installer fills status extras in
+    int flags =
+        PendingIntent.FLAG_UPDATE_CURRENT
+            | (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S ? PendingIntent.FLAG_MUTABLE : 0);
+    PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, result, flags);
+    context
+        .getPackageManager()
+        .getPackageInstaller()
+        .uninstall(uri.getSchemeSpecificPart(), pendingIntent.getIntentSender());
+  }
+
+  private void handleResult(String packageUri, int status, String message, Intent confirmation) {
+    if (status == PackageInstaller.STATUS_SUCCESS) {
+      succeed(packageUri);
+      return;
+    }
+    // Result of request given up before
+    if (!packageUri.equals(current)) return;
+
+    if (status == PackageInstaller.STATUS_PENDING_USER_ACTION) {
+      if (confirmation == null) {
+        fail(packageUri, "No confirmation activity");
+        return;
+      }
+      requestRemoval(context, confirmation);
+      return;
+    }
+    fail(packageUri, message == null ? "Status " + status : message);
+  }
+
+  private void succeed(String packageUri) {
+    dao().deleteByPackageUri(packageUri);
+    applicationDao().markRemoved(packageUri);
+    if (packageUri.equals(current)) advance();
+  }
+
+  private void fail(String packageUri, String message) {
+    RemovalRequestDao dao = dao();
+    RemovalRequest request = dao.findByPackageUri(packageUri);
+    if (request != null) {
+      request.setState(RemovalRequest.STATE_FAILED);
+      request.setLastError(message);
+      request.setUpdatedAt(System.currentTimeMillis());
+      dao.update(request);
+      Log.w(TAG, "Removal of " + packageUri + " failed: " + message);
+      defer(packageUri);
+    }
+    if (packageUri.equals(current)) advance();
+  }
+
+  /***
+   * Schedule removal of declined application again after backoff
+   */
+  private void defer(String packageUri) {
+    InstalledApplicationDao applicationDao = applicationDao();
+    InstalledApplication application = applicationDao.findByPackageUri(packageUri);
+    if (application == null || application.getState() == InstalledApplication.STATE_REMOVED)
+      return;
+    long nextAttemptAt = System.currentTimeMillis() + getRetryDelay(application.getAttempts() + 1);
+    applicationDao.defer(packageUri, nextAttemptAt);
+    scheduler.get().scheduleTask(TaskDescriptor.removal(packageUri, nextAttemptAt));
+  }
+
+  private void advance() {
+    current = null;
+    nextPromptAt = System.currentTimeMillis() + PROMPT_INTERVAL_MILLIS;
+    pump();
   }
 
   private void requestRemoval(Context context, Intent intent) {
+    // Not started from an activity
+    intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
     context.startActivity(intent);
   }
 }
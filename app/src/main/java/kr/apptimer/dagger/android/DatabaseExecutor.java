@@ -0,0 +1,232 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.Getter;
+
+/***
+ * Runs database work off the main thread. Reads and writes use separate lanes so that a long
+ * write does not hold back reads. Queues are unbounded, a task always runs on its lane and never on
+ * the submitting thread.
+ * Both lanes are also given to {@link androidx.room.RoomDatabase.Builder} as query and
+ * transaction executor by {@link kr.apptimer.dagger.module.DatabaseProvider}.
+ * Can be injected into other classes by dagger.
+ *
+ * @author Singlerr
+ */
+@Singleton
+public final class DatabaseExecutor {
+
+  private static final String TAG = "DatabaseExecutor";
+
+  private static final int READ_THREADS = 2;
+
+  private static final int WRITE_THREADS = 1;
+
+  /***
+   * Queue depth from which a new peak is logged as warning
+   */
+  private static final int WARN_QUEUE_DEPTH = 128;
+
+  @Getter private final Lane readLane;
+
+  @Getter private final Lane writeLane;
+
+  @Inject
+  public DatabaseExecutor() {
+    this.readLane = new Lane("db-read", READ_THREADS);
+    this.writeLane = new Lane("db-write", WRITE_THREADS);
+  }
+
+  /***
+   * Run {@param task} on read lane
+   *
+   * @param task task only reading database
+   */
+  public void read(Runnable task) {
+    readLane.execute(task);
+  }
+
+  /***
+   * Run {@param task} on write lane. Writes are executed one at a time in submission order.
+   *
+   * @param task task writing database
+   */
+  public void write(Runnable task) {
+    writeLane.execute(task);
+  }
+
+  /***
+   * Log queue depth and wait time of both lanes
+   */
+  public void logMetrics() {
+    Log.i(TAG, readLane.toString());
+    Log.i(TAG, writeLane.toString());
+  }
+
+  /***
+   * Thread pool recording queue depth and time tasks waited before running
+   *
+   * @author Singlerr
+   */
+  public static final class Lane implements Executor {
+
+    private final String name;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    private final AtomicLong started = new AtomicLong();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
+
+    private Lane(String name, int threads) {
+      this.name = name;
+      AtomicInteger sequence = new AtomicInteger();
+      ThreadFactory factory =
+          runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          };
+      this.executor =
+          new ThreadPoolExecutor(
+              threads,
+              threads,
+              30,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(),
+              factory);
+      this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+      long enqueuedAt = System.nanoTime();
+      submitted.incrementAndGet();
+      executor.execute(
+          () -> {
+            recordWait(System.nanoTime() - enqueuedAt);
+            try {
+              command.run();
+            } finally {
+              completed.incrementAndGet();
+            }
+          });
+      int depth = executor.getQueue().size();
+      int peak;
+      while (depth > (peak = peakQueueDepth.get())) {
+        if (!peakQueueDepth.compareAndSet(peak, depth)) continue;
+        if (depth >= WARN_QUEUE_DEPTH) Log.w(TAG, name + " queue reached depth " + depth);
+        break;
+      }
+    }
+
+    private void recordWait(long waitNanos) {
+      started.incrementAndGet();
+      totalWaitNanos.addAndGet(waitNanos);
+      long max;
+      while (waitNanos > (max = maxWaitNanos.get())
+          && !maxWaitNanos.compareAndSet(max, waitNanos)) {}
+    }
+
+    /***
+     * Returns count of tasks waiting in queue
+     *
+     * @return current queue depth
+     */
+    public int getQueueDepth() {
+      return executor.getQueue().size();
+    }
+
+    public int getPeakQueueDepth() {
+      return peakQueueDepth.get();
+    }
+
+    public long getSubmittedCount() {
+      return submitted.get();
+    }
+
+    public long getCompletedCount() {
+      return completed.get();
+    }
+
+    /***
+     * Returns average time tasks waited in queue
+     *
+     * @return average wait time in millis
+     */
+    public double getAverageWaitMillis() {
+      long count = started.get();
+      return count == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / count;
+    }
+
+    public long getMaxWaitMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+      return name
+          + "{submitted="
+          + getSubmittedCount()
+          + ", completed="
+          + getCompletedCount()
+          + ", queueDepth="
+          + getQueueDepth()
+          + ", peakQueueDepth="
+          + getPeakQueueDepth()
+          + ", averageWaitMillis="
+          + getAverageWaitMillis()
+          + ", maxWaitMillis="
+          + getMaxWaitMillis()
+          + "}";
+    }
+  }
+}
@@ -0,0 +1,291 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android;
+
+import android.app.usage.UsageStats;
+import android.app.usage.UsageStatsManager;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+import dagger.Lazy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import kr.apptimer.dagger.android.task.TaskDescriptor;
+import kr.apptimer.database.LocalDatabase;
+import kr.apptimer.database.dao.InstalledApplicationDao;
+import kr.apptimer.database.data.InstalledApplication;
+
+/***
+ * Derives expiration deadline of {@link InstalledApplication} from its policy and duration.
+ * Changing policy of an application updates its row only and moves its removal task by key, so
+ * other applications are neither read nor scheduled again.
+ * Deadlines counting from last use are checked again when they come due. An application used
+ * since is moved to its new deadline instead of being removed. Last use comes from
+ * {@link UsageStatsManager}, and counts from install time while usage access is not granted.
+ * Can be injected into other classes by dagger.
+ *
+ * @author Singlerr
+ */
+@Singleton
+public final class ExpirationPolicyEngine {
+
+  private static final String TAG = "ExpirationPolicy";
+
+  /***
+   * Count of package uris bound to one statement. SQLite allows 999 variables.
+   */
+  private static final int CHUNK_SIZE = 500;
+
+  private final Context context;
+
+  private final Lazy<LocalDatabase> database;
+
+  private final DatabaseExecutor databaseExecutor;
+
+  private final Lazy<TaskScheduler> scheduler;
+
+  @Inject
+  public ExpirationPolicyEngine(
+      Context context,
+      Lazy<LocalDatabase> database,
+      DatabaseExecutor databaseExecutor,
+      Lazy<TaskScheduler> scheduler) {
+    this.context = context;
+    this.database = database;
+    this.databaseExecutor = databaseExecutor;
+    this.scheduler = scheduler;
+  }
+
+  /***
+   * Returns expiration deadline given by policy
+   *
+   * @param policyType one of POLICY_ constants of {@link InstalledApplication}
+   * @param duration time in millis application lasts
+   * @param installedTime install time in epoch millis
+   * @param lastUsedTime last use in epoch millis, 0 if unknown
+   * @return expiration deadline in epoch millis
+   */
+  public static long computeDeadline(
+      int policyType, long duration, long installedTime, long lastUsedTime) {
+    if (policyType == InstalledApplication.POLICY_AFTER_LAST_USE)
+      return Math.max(installedTime, lastUsedTime) + duration;
+    return installedTime + duration;
+  }
+
+  /***
+   * Set policy of application of {@param packageUri} and move its removal to the new deadline.
+   * Safe to call on main thread.
+   *
+   * @param packageUri package uri of application
+   * @param policyType one of POLICY_ constants of {@link InstalledApplication}
+   * @param duration time in millis application lasts
+   */
+  public void changePolicy(String packageUri, int policyType, long duration) {
+    databaseExecutor.write(
+        () -> {
+          InstalledApplicationDao dao = database.get().installedApplicationDao();
+          InstalledApplication application = dao.findByPackageUri(packageUri);
+          if (application == null) return;
+          long now = System.currentTimeMillis();
+          Map<String, UsageStats> usage =
+              queryUsage(policyType, getUsageSince(application, now), now);
+          TaskDescriptor task = applyPolicy(dao, application, policyType, duration, usage);
+          // Heap entry with same key is moved, nothing else is rescheduled
+          if (task != null) scheduler.get().scheduleTask(task);
+        });
+  }
+
+  /***
+   * Set policy of every application of {@param packageUris} in one transaction and schedule their
+   * removals with one call to {@link TaskScheduler}. Safe to call on main thread.
+   *
+   * @param packageUris package uris of applications
+   * @param policyType one of POLICY_ constants of {@link InstalledApplication}
+   * @param duration time in millis application lasts
+   */
+  public void changePolicies(List<String> packageUris, int policyType, long duration) {
+    if (packageUris.isEmpty()) return;
+    List<String> copy = new ArrayList<>(packageUris);
+    databaseExecutor.write(() -> applyPolicies(copy, policyType, duration));
+  }
+
+  /***
+   * Move applications of {@param packageUris} used since their deadline was computed to their new
+   * deadline. Must be called on write lane of {@link DatabaseExecutor}.
+   *
+   * @param packageUris package uris of applications whose removal came due
+   * @return package uris whose removal is still due
+   */
+  public List<String> postponeUsed(List<String> packageUris) {
+    InstalledApplicationDao dao = database.get().installedApplicationDao();
+    List<InstalledApplication> candidates = new ArrayList<>();
+    for (int from = 0; from < packageUris.size(); from += CHUNK_SIZE)
+      candidates.addAll(
+          dao.findUsageRelativeByPackageUris(
+              packageUris.subList(from, Math.min(from + CHUNK_SIZE, packageUris.size()))));
+    // Common case, no deadline counts from last use
+    if (candidates.isEmpty()) return packageUris;
+
+    long now = System.currentTimeMillis();
+    Map<String, UsageStats> usage =
+        queryUsage(
+            InstalledApplication.POLICY_AFTER_LAST_USE,
+            getEarliestUsageSince(candidates, now),
+            now);
+    HashSet<String> postponed = new HashSet<>();
+    List<TaskDescriptor> tasks = new ArrayList<>();
+    database
+        .get()
+        .runInTransaction(
+            () -> {
+              for (InstalledApplication application : candidates) {
+                long deadline =
+                    computeDeadline(
+                        application.getPolicyType(),
+                        application.getDuration(),
+                        getInstalledTime(application, now),
+                        getLastUsedTime(usage, application.getPackageUri()));
+                if (deadline <= now) continue;
+                dao.rescheduleById(application.getId(), deadline);
+                postponed.add(application.getPackageUri());
+                tasks.add(TaskDescriptor.removal(application.getPackageUri(), deadline));
+              }
+            });
+    if (tasks.isEmpty()) return packageUris;
+    scheduler.get().scheduleTasks(tasks);
+    Log.i(TAG, "Postponed " + tasks.size() + " removal(s) of used applications");
+
+    List<String> due = new ArrayList<>(packageUris.size() - postponed.size());
+    for (String packageUri : packageUris) if (!postponed.contains(packageUri)) due.add(packageUri);
+    return due;
+  }
+
+  private void applyPolicies(List<String> packageUris, int policyType, long duration) {
+    LocalDatabase localDatabase = database.get();
+    InstalledApplicationDao dao = localDatabase.installedApplicationDao();
+    List<InstalledApplication> applications = new ArrayList<>(packageUris.size());
+    for (int from = 0; from < packageUris.size(); from += CHUNK_SIZE)
+      applications.addAll(
+          dao.findByPackageUris(
+              packageUris.subList(from, Math.min(from + CHUNK_SIZE, packageUris.size()))));
+    if (applications.isEmpty()) return;
+
+    long now = System.currentTimeMillis();
+    Map<String, UsageStats> usage =
+        queryUsage(policyType, getEarliestUsageSince(applications, now), now);
+    List<TaskDescriptor> tasks = new ArrayList<>(applications.size());
+    localDatabase.runInTransaction(
+        () -> {
+          for (InstalledApplication application : applications) {
+            TaskDescriptor task = applyPolicy(dao, application, policyType, duration, usage);
+            if (task != null) tasks.add(task);
+          }
+        });
+    scheduler.get().scheduleTasks(tasks);
+  }
+
+  /***
+   * Store policy and derived deadline of {@param application}
+   *
+   * @return removal task at the new deadline, or null if removal is being prompted
+   */
+  private TaskDescriptor applyPolicy(
+      InstalledApplicationDao dao,
+      InstalledApplication application,
+      int policyType,
+      long duration,
+      Map<String, UsageStats> usage) {
+    long deadline =
+        computeDeadline(
+            policyType,
+            duration,
+            getInstalledTime(application, System.currentTimeMillis()),
+            getLastUsedTime(usage, application.getPackageUri()));
+    if (dao.updatePolicyById(application.getId(), policyType, duration, deadline) == 0) return null;
+    return TaskDescriptor.removal(application.getPackageUri(), deadline);
+  }
+
+  /***
+   * Returns install time of {@param application}, counting from {@param now} while it is unknown so
+   * that a new policy never makes application due at once
+   */
+  private static long getInstalledTime(InstalledApplication application, long now) {
+    long installedTime = application.getInstalledTime();
+    return installedTime == InstalledApplication.INSTALLED_TIME_UNKNOWN ? now : installedTime;
+  }
+
+  /***
+   * Returns time from which use of {@param application} can move its deadline. While install time
+   * is unknown, that is the time its deadline counts from, so usage is never queried from epoch.
+   *
+   * @param application stored application
+   * @param now current time in epoch millis
+   * @return start of usage window in epoch millis, never after {@param now}
+   */
+  static long getUsageSince(InstalledApplication application, long now) {
+    long installedTime = application.getInstalledTime();
+    if (installedTime != InstalledApplication.INSTALLED_TIME_UNKNOWN)
+      return Math.min(installedTime, now);
+    long countedFrom = application.getExpirationDeadline() - application.getDuration();
+    return countedFrom > 0 ? Math.min(countedFrom, now) : now;
+  }
+
+  private static long getEarliestUsageSince(List<InstalledApplication> applications, long now) {
+    long earliest = now;
+    for (InstalledApplication application : applications)
+      earliest = Math.min(earliest, getUsageSince(application, now));
+    return earliest;
+  }
+
+  private static long getLastUsedTime(Map<String, UsageStats> usage, String packageUri) {
+    if (usage.isEmpty()) return 0;
+    UsageStats stats = usage.get(Uri.parse(packageUri).getSchemeSpecificPart());
+    return stats == null ? 0 : stats.getLastTimeUsed();
+  }
+
+  /***
+   * Returns usage of every package between {@param since} and {@param now}, keyed by package name.
+   * Empty unless {@param policyType} counts from last use and usage access is granted.
+   */
+  private Map<String, UsageStats> queryUsage(int policyType, long since, long now) {
+    if (policyType != InstalledApplication.POLICY_AFTER_LAST_USE) return Collections.emptyMap();
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP_MR1) return Collections.emptyMap();
+    UsageStatsManager usageStatsManager =
+        (UsageStatsManager) context.getSystemService(Context.USAGE_STATS_SERVICE);
+    if (usageStatsManager == null) return Collections.emptyMap();
+    return usageStatsManager.queryAndAggregateUsageStats(since, now);
+  }
+}
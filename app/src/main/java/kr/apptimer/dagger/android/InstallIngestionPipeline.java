@@ -0,0 +1,244 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.Settings;
+import android.util.Log;
+import dagger.Lazy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import kr.apptimer.R;
+import kr.apptimer.android.service.AppExpirationOverlayService;
+import kr.apptimer.dagger.android.task.TaskDescriptor;
+import kr.apptimer.database.LocalDatabase;
+import kr.apptimer.database.dao.InstalledApplicationDao;
+import kr.apptimer.database.data.InstalledApplication;
+import kr.apptimer.utils.BatchDebouncer;
+
+/***
+ * Turns bursts of package installation events into batches. Each batch resolves labels off the
+ * main thread, is written to database in one transaction and is scheduled with one call to
+ * {@link TaskScheduler}.
+ * User is asked to choose expiration of the batch by {@link AppExpirationOverlayService}, started
+ * from main thread. Applications are listed in a notification instead when overlay may not be
+ * shown or service may not be started from background.
+ * Can be injected into other classes by dagger.
+ *
+ * @author Singlerr
+ */
+@Singleton
+public final class InstallIngestionPipeline {
+
+  private static final String TAG = "InstallIngestion";
+
+  /***
+   * Expiration of newly installed application until user chooses one
+   */
+  public static final long DEFAULT_LIFETIME = TimeUnit.DAYS.toMillis(7);
+
+  private static final long QUIET_MILLIS = 500;
+
+  private static final long MAX_DELAY_MILLIS = 2_000;
+
+  private static final int MAX_BATCH_SIZE = 100;
+
+  private final Context context;
+
+  private final Lazy<LocalDatabase> database;
+
+  private final DatabaseExecutor databaseExecutor;
+
+  private final Lazy<TaskScheduler> scheduler;
+
+  private final Lazy<NotificationHelper> notificationHelper;
+
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  private final BatchDebouncer<String> debouncer;
+
+  @Inject
+  public InstallIngestionPipeline(
+      Context context,
+      Lazy<LocalDatabase> database,
+      DatabaseExecutor databaseExecutor,
+      Lazy<TaskScheduler> scheduler,
+      Lazy<NotificationHelper> notificationHelper) {
+    this.context = context;
+    this.database = database;
+    this.databaseExecutor = databaseExecutor;
+    this.scheduler = scheduler;
+    this.notificationHelper = notificationHelper;
+    ScheduledExecutorService executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "install-ingestion");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.debouncer =
+        new BatchDebouncer<>(
+            executor, QUIET_MILLIS, MAX_DELAY_MILLIS, MAX_BATCH_SIZE, this::resolve);
+  }
+
+  /***
+   * Queue newly installed package. Safe to call on main thread.
+   *
+   * @param packageUri package uri of installed application
+   */
+  public void submit(String packageUri) {
+    debouncer.submit(packageUri);
+  }
+
+  /***
+   * Resolve labels of {@param packageUris} on ingestion thread, then store them on write lane
+   */
+  private void resolve(List<String> packageUris) {
+    PackageManager packageManager = context.getPackageManager();
+    long installedAt = System.currentTimeMillis();
+    List<InstalledApplication> applications = new ArrayList<>(packageUris.size());
+    for (String packageUri : packageUris) {
+      String packageName = Uri.parse(packageUri).getSchemeSpecificPart();
+      String label = resolveLabel(packageManager, packageName);
+      // Removed again before batch was flushed
+      if (label == null) continue;
+      InstalledApplication application = new InstalledApplication();
+      application.setPackageUri(packageUri);
+      application.setName(label);
+      application.setInstalledTime(installedAt);
+      application.setPolicyType(InstalledApplication.POLICY_AFTER_INSTALL);
+      application.setDuration(DEFAULT_LIFETIME);
+      application.setExpirationDeadline(
+          ExpirationPolicyEngine.computeDeadline(
+              InstalledApplication.POLICY_AFTER_INSTALL, DEFAULT_LIFETIME, installedAt, 0));
+      applications.add(application);
+    }
+    if (applications.isEmpty()) return;
+    databaseExecutor.write(() -> ingest(applications));
+  }
+
+  private void ingest(List<InstalledApplication> applications) {
+    long start = System.nanoTime();
+    InstalledApplicationDao dao = database.get().installedApplicationDao();
+    List<String> submittedUris = new ArrayList<>(applications.size());
+    for (InstalledApplication application : applications)
+      submittedUris.add(application.getPackageUri());
+    long[] ids =
+        database
+            .get()
+            .runInTransaction(
+                () -> {
+                  // Reinstalled after being removed
+                  dao.deleteRemovedByPackageUris(submittedUris);
+                  // Replayed broadcasts and packages already stored are ignored by unique uri
+                  return dao.insertAll(applications.toArray(new InstalledApplication[0]));
+                });
+    List<InstalledApplication> inserted = new ArrayList<>(applications.size());
+    for (int i = 0; i < ids.length; i++) {
+      if (ids[i] != -1) inserted.add(applications.get(i));
+    }
+    if (inserted.isEmpty()) return;
+
+    List<TaskDescriptor> tasks = new ArrayList<>(inserted.size());
+    String[] packageUris = new String[inserted.size()];
+    List<String> names = new ArrayList<>(inserted.size());
+    for (int i = 0; i < inserted.size(); i++) {
+      InstalledApplication application = inserted.get(i);
+      tasks.add(
+          TaskDescriptor.removal(application.getPackageUri(), application.getExpirationDeadline()));
+      packageUris[i] = application.getPackageUri();
+      names.add(application.getName());
+    }
+    scheduler.get().scheduleTasks(tasks);
+
+    // Let user choose expiration of the whole batch
+    mainHandler.post(() -> promptExpiration(packageUris, names));
+
+    Log.i(
+        TAG,
+        "Ingested "
+            + inserted.size()
+            + " of "
+            + applications.size()
+            + " packages in "
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+            + "ms");
+  }
+
+  /***
+   * Show overlay for {@param packageUris}, or notify {@param names} with default expiration if
+   * overlay cannot be shown. Runs on main thread.
+   */
+  private void promptExpiration(String[] packageUris, List<String> names) {
+    if (canDrawOverlays()) {
+      Intent service = new Intent(context, AppExpirationOverlayService.class);
+      service.putExtra(AppExpirationOverlayService.EXTRA_PACKAGE_URIS, packageUris);
+      try {
+        context.startService(service);
+        return;
+      } catch (IllegalStateException e) {
+        // Services may not be started from background since android O
+        Log.w(TAG, "Overlay could not be started, notifying instead", e);
+      }
+    }
+    int days = (int) TimeUnit.MILLISECONDS.toDays(DEFAULT_LIFETIME);
+    NotificationHelper helper = notificationHelper.get();
+    for (String name : names)
+      helper.enqueue(
+          context
+              .getResources()
+              .getQuantityString(R.plurals.ingestion_expires_in_days, days, name, days));
+  }
+
+  private boolean canDrawOverlays() {
+    return Build.VERSION.SDK_INT < Build.VERSION_CODES.M || Settings.canDrawOverlays(context);
+  }
+
+  private static String resolveLabel(PackageManager packageManager, String packageName) {
+    try {
+      ApplicationInfo info = packageManager.getApplicationInfo(packageName, 0);
+      return packageManager.getApplicationLabel(info).toString();
+    } catch (PackageManager.NameNotFoundException e) {
+      return null;
+    }
+  }
+}
@@ -29,43 +29,306 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package kr.apptimer.dagger.android;
 
+import android.annotation.SuppressLint;
 import android.app.PendingIntent;
-import java.util.Date;
+import android.content.Context;
+import android.content.Intent;
+import dagger.Lazy;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import kr.apptimer.dagger.android.task.SerializableTask;
+import kr.apptimer.dagger.android.task.TaskExecutor;
+import kr.apptimer.database.LocalDatabase;
+import kr.apptimer.database.dao.ScheduledAlarmDao;
 import kr.apptimer.database.data.InstalledApplication;
+import kr.apptimer.database.data.ScheduledAlarm;
+import lombok.Getter;
 
 /***
  * Cache storing {@link android.app.PendingIntent} of alarm which removes application
+ * Lookups are O(1) in both directions: package uri to intent (or request code) and intent (or
+ * request code) to package uri. When more than {@link #getMaxSize()} entries are cached, least
+ * recently used one is evicted.
+ * Every alarm is also written to {@link ScheduledAlarm} table, so after process death an entry is
+ * reconstructed from database on first lookup instead of re-registering every alarm.
+ * Methods touching database must not be called on main thread. Database is opened on first
+ * access, not on injection.
  * @author Singlerr
  */
 @Singleton
 public final class IntentCache {
 
+  public static final int DEFAULT_MAX_SIZE = 512;
+
+  private final Context context;
+
+  private final Lazy<LocalDatabase> database;
+
   /***
    * String: {@link InstalledApplication#getPackageUri()}
-   * PendingIntent: {@link TaskScheduler#scheduleTask(SerializableTask, Date)}
+   * Entry: {@link ScheduledAlarm} and {@link PendingIntent} registered by
+   * {@link kr.apptimer.dagger.android.scheduler.AlarmManagerBackend}
    */
-  private HashMap<String, PendingIntent> caches;
+  private final LinkedHashMap<String, Entry> caches;
+
+  private final HashMap<PendingIntent, String> packageUrisByIntent;
+
+  private final HashMap<Integer, String> packageUrisByRequestCode;
+
+  @Getter private int maxSize = DEFAULT_MAX_SIZE;
+
+  @Getter private long hitCount;
+
+  @Getter private long missCount;
+
+  @Getter private long evictionCount;
 
   @Inject
-  public IntentCache() {}
+  public IntentCache(Context context, Lazy<LocalDatabase> database) {
+    this.context = context;
+    this.database = database;
+    this.caches =
+        new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() <= maxSize) return false;
+            forget(eldest.getValue());
+            evictionCount++;
+            return true;
+          }
+        };
+    this.packageUrisByIntent = new HashMap<>();
+    this.packageUrisByRequestCode = new HashMap<>();
+  }
+
+  /***
+   * Store alarm of {@param packageUri} firing at {@param deadline}. Existing alarm keeps its
+   * request code and its generation is increased.
+   *
+   * @param packageUri package uri of application
+   * @param deadline time when alarm fires in epoch millis
+   * @return stored {@link ScheduledAlarm}
+   */
+  public synchronized ScheduledAlarm record(String packageUri, long deadline) {
+    Entry entry = load(packageUri);
+    if (entry != null) {
+      if (entry.alarm.getDeadline() == deadline) return entry.alarm;
+      dao().reschedule(packageUri, deadline);
+      entry.alarm.setDeadline(deadline);
+      entry.alarm.setGeneration(entry.alarm.getGeneration() + 1);
+      return entry.alarm;
+    }
+    ScheduledAlarm alarm = new ScheduledAlarm();
+    alarm.setPackageUri(packageUri);
+    alarm.setDeadline(deadline);
+    alarm.setRequestCode((int) dao().insert(alarm));
+    cache(packageUri, new Entry(alarm));
+    return alarm;
+  }
+
+  /***
+   * Returns stored alarm of {@param packageUri}
+   *
+   * @param packageUri package uri of application
+   * @return {@link ScheduledAlarm} or null if there is no alarm
+   */
+  public synchronized ScheduledAlarm getAlarm(String packageUri) {
+    Entry entry = load(packageUri);
+    return entry == null ? null : entry.alarm;
+  }
+
+  /***
+   * Returns whether alarm of {@param packageUri} firing at {@param deadline} is still registered
+   * to {@link android.app.AlarmManager}
+   *
+   * @param packageUri package uri of application
+   * @param deadline time when alarm fires in epoch millis
+   * @return true if the same alarm is armed
+   */
+  public synchronized boolean isArmed(String packageUri, long deadline) {
+    Entry entry = load(packageUri);
+    if (entry == null || entry.alarm.getDeadline() != deadline) return false;
+    if (entry.intent == null) {
+      PendingIntent intent = findRegisteredIntent(entry.alarm.getRequestCode());
+      if (intent == null) return false;
+      entry.intent = intent;
+      packageUrisByIntent.put(intent, packageUri);
+    }
+    return true;
+  }
+
+  /***
+   * Returns whether {@param generation} is the latest generation of alarm with
+   * {@param requestCode}
+   *
+   * @param requestCode request code of alarm
+   * @param generation generation carried by fired alarm
+   * @return false if alarm is stale or removed
+   */
+  public synchronized boolean isCurrent(int requestCode, int generation) {
+    String packageUri = packageUrisByRequestCode.get(requestCode);
+    ScheduledAlarm alarm =
+        packageUri != null ? caches.get(packageUri).alarm : dao().findByRequestCode(requestCode);
+    return alarm != null && alarm.getGeneration() == generation;
+  }
+
+  /***
+   * Returns every stored alarm, earliest first. Reads database without filling cache.
+   *
+   * @return all {@link ScheduledAlarm}
+   */
+  public List<ScheduledAlarm> getAlarms() {
+    return dao().findAll();
+  }
+
+  public synchronized PendingIntent getCachedIntent(String packageUri) {
+    Entry entry = load(packageUri);
+    return entry == null ? null : entry.intent;
+  }
+
+  public synchronized String getPackageUri(PendingIntent intent) {
+    return count(packageUrisByIntent.get(intent));
+  }
 
-  public PendingIntent getCachedIntent(String packageUri) {
-    return caches.get(packageUri);
+  public synchronized String getPackageUri(int requestCode) {
+    String packageUri = count(packageUrisByRequestCode.get(requestCode));
+    if (packageUri != null) return packageUri;
+    ScheduledAlarm alarm = dao().findByRequestCode(requestCode);
+    if (alarm == null) return null;
+    cache(alarm.getPackageUri(), new Entry(alarm));
+    return alarm.getPackageUri();
   }
 
-  public String getPackageUri(PendingIntent intent) {
-    for (Map.Entry<String, PendingIntent> entry : caches.entrySet()) {
-      if (entry.getValue().equals(intent)) return entry.getKey();
+  /***
+   * Attach {@param intent} to alarm of {@param packageUri} recorded by
+   * {@link #record(String, long)}
+   *
+   * @param packageUri package uri of application
+   * @param intent registered {@link PendingIntent}
+   */
+  public synchronized void putCache(String packageUri, PendingIntent intent) {
+    Entry entry = load(packageUri);
+    if (entry == null) throw new IllegalStateException("No alarm recorded for " + packageUri);
+    if (entry.intent != null) packageUrisByIntent.remove(entry.intent);
+    entry.intent = intent;
+    packageUrisByIntent.put(intent, packageUri);
+  }
+
+  /***
+   * Remove alarm of {@param packageUri} from cache and database
+   *
+   * @param packageUri package uri of application
+   * @return removed {@link PendingIntent}, reconstructed if it was not cached, or null
+   */
+  public synchronized PendingIntent removeCache(String packageUri) {
+    Entry entry = caches.remove(packageUri);
+    if (entry != null) forget(entry);
+    else {
+      ScheduledAlarm alarm = dao().findByPackageUri(packageUri);
+      if (alarm != null) entry = new Entry(alarm);
+    }
+    if (entry == null) return null;
+    dao().deleteByPackageUri(packageUri);
+    return entry.intent != null
+        ? entry.intent
+        : findRegisteredIntent(entry.alarm.getRequestCode());
+  }
+
+  /***
+   * Remove alarm of {@param packageUri} after the task it fired has completed. Kept if it was
+   * rescheduled to another deadline meanwhile.
+   *
+   * @param packageUri package uri of application
+   * @param deadline deadline of completed task in epoch millis
+   * @return true if alarm was removed
+   */
+  public synchronized boolean removeCompleted(String packageUri, long deadline) {
+    Entry entry = load(packageUri);
+    if (entry == null || entry.alarm.getDeadline() != deadline) return false;
+    removeCache(packageUri);
+    return true;
+  }
+
+  /***
+   * Change maximum count of cached entries. Evicts least recently used entries immediately if
+   * there are more than {@param maxSize}. Evicted entries stay in database.
+   *
+   * @param maxSize maximum count of entries
+   */
+  public synchronized void setMaxSize(int maxSize) {
+    if (maxSize <= 0) throw new IllegalArgumentException("Max size must be positive");
+    this.maxSize = maxSize;
+    while (caches.size() > maxSize) {
+      Map.Entry<String, Entry> eldest = caches.entrySet().iterator().next();
+      caches.remove(eldest.getKey());
+      forget(eldest.getValue());
+      evictionCount++;
+    }
+  }
+
+  public synchronized int size() {
+    return caches.size();
+  }
+
+  private ScheduledAlarmDao dao() {
+    return database.get().scheduledAlarmDao();
+  }
+
+  /***
+   * Returns cached entry, loading it from database on miss
+   */
+  private Entry load(String packageUri) {
+    Entry entry = caches.get(packageUri);
+    if (entry != null) {
+      hitCount++;
+      return entry;
     }
-    return null;
+    missCount++;
+    ScheduledAlarm alarm = dao().findByPackageUri(packageUri);
+    if (alarm == null) return null;
+    entry = new Entry(alarm);
+    cache(packageUri, entry);
+    return entry;
+  }
+
+  private void cache(String packageUri, Entry entry) {
+    caches.put(packageUri, entry);
+    packageUrisByRequestCode.put(entry.alarm.getRequestCode(), packageUri);
+    if (entry.intent != null) packageUrisByIntent.put(entry.intent, packageUri);
+  }
+
+  @SuppressLint("InlinedApi")
+  private PendingIntent findRegisteredIntent(int requestCode) {
+    Intent intent = new Intent(context, TaskExecutor.class);
+    return PendingIntent.getBroadcast(
+        context,
+        requestCode,
+        intent,
+        PendingIntent.FLAG_NO_CREATE | PendingIntent.FLAG_IMMUTABLE);
+  }
+
+  private String count(String packageUri) {
+    if (packageUri == null) missCount++;
+    else hitCount++;
+    return packageUri;
+  }
+
+  private void forget(Entry entry) {
+    if (entry.intent != null) packageUrisByIntent.remove(entry.intent);
+    packageUrisByRequestCode.remove(entry.alarm.getRequestCode());
   }
 
-  public void putCache(String packageUri, PendingIntent intent) {
-    caches.put(packageUri, intent);
+  private static final class Entry {
+
+    private final ScheduledAlarm alarm;
+
+    private PendingIntent intent;
+
+    private Entry(ScheduledAlarm alarm) {
+      this.alarm = alarm;
+    }
   }
 }
@@ -34,51 +34,116 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.content.Context;
 import android.os.Build;
+import android.util.Log;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import kr.apptimer.R;
+import kr.apptimer.utils.BatchDebouncer;
 
 /***
  * Manager class for creating android notification using {@link androidx.core.app.NotificationCompat}
+ * Lines queued by {@link #enqueue(String)} are buffered for a short window and posted as one
+ * {@link NotificationCompat.InboxStyle} summary. Posts are at least
+ * {@link #MIN_POST_INTERVAL_MILLIS} apart and reuse one builder, so bulk expirations cost a few
+ * Binder calls instead of one each.
+ * Notification channel is created on first post, so injecting this class costs no system call.
  * @author Singlerr
  */
 @Singleton
 public final class NotificationHelper {
 
+  private static final String TAG = "NotificationHelper";
+
   private static final int NOTIFICATION_ID = 127;
 
+  private static final int SUMMARY_NOTIFICATION_ID = 128;
+
   private static final String CHANNEL_NAME = "app_timer_notification_name";
   private static final String CHANNEL_ID = "app_timer_notification_id";
   private static final String CHANNEL_DESCRIPTION = "app_timer_notification_description";
 
-  private int iconId;
+  private static final long QUIET_MILLIS = 1_000;
+
+  private static final long MAX_DELAY_MILLIS = 5_000;
+
+  private static final int MAX_BATCH_SIZE = 50;
+
+  /***
+   * Minimum time between two summaries posted to {@link NotificationManagerCompat}
+   */
+  private static final long MIN_POST_INTERVAL_MILLIS = 2_000;
+
+  /***
+   * Maximum count of lines shown by {@link NotificationCompat.InboxStyle}
+   */
+  private static final int MAX_INBOX_LINES = 6;
+
+  private final int iconId = R.drawable.ic_notification;
+
+  private final Context context;
+
+  private volatile boolean channelCreated;
+
+  private final ScheduledExecutorService executor;
+
+  private final BatchDebouncer<String> debouncer;
+
+  // Fields below are only touched on executor thread
+
+  private NotificationCompat.Builder summaryBuilder;
 
-  private Context context;
+  private final List<String> pendingLines = new ArrayList<>();
 
-  private NotificationChannel channel;
+  private long lastPostedAt;
+
+  private boolean postScheduled;
+
+  private long postedCount;
+
+  private long queuedCount;
 
   @Inject
   public NotificationHelper(Context context) {
-    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O)
-      throw new IllegalStateException("Only android version over " + Build.VERSION_CODES.O);
-    // TODO("Set iconId")
     this.context = context;
-    createNotificationChannel();
+    // Thread starts with first queued line
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "notification");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.debouncer =
+        new BatchDebouncer<>(
+            executor, QUIET_MILLIS, MAX_DELAY_MILLIS, MAX_BATCH_SIZE, this::onBatch);
   }
 
-  @SuppressLint("InlinedApi")
-  private void createNotificationChannel() {
-    this.channel =
-        new NotificationChannel(CHANNEL_ID, CHANNEL_NAME, NotificationManager.IMPORTANCE_DEFAULT);
-    this.channel.setDescription(CHANNEL_DESCRIPTION);
-
-    // Default
-    this.iconId = R.drawable.ic_launcher_background;
-
-    NotificationManager manager = context.getSystemService(NotificationManager.class);
-    manager.createNotificationChannel(channel);
+  /***
+   * Create notification channel once. Channels do not exist below android O.
+   */
+  @SuppressLint("NewApi")
+  private void ensureNotificationChannel() {
+    if (channelCreated) return;
+    synchronized (this) {
+      if (channelCreated) return;
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+        NotificationChannel channel =
+            new NotificationChannel(
+                CHANNEL_ID, CHANNEL_NAME, NotificationManager.IMPORTANCE_DEFAULT);
+        channel.setDescription(CHANNEL_DESCRIPTION);
+
+        NotificationManager manager = context.getSystemService(NotificationManager.class);
+        manager.createNotificationChannel(channel);
+      }
+      channelCreated = true;
+    }
   }
   /***
    * Send notification with title {@param title} and content {@param content}
@@ -86,6 +151,7 @@ public final class NotificationHelper {
    * @param content content of notification
    */
   public void sendNotification(String title, String content) {
+    ensureNotificationChannel();
     NotificationCompat.Builder builder =
         new NotificationCompat.Builder(context, CHANNEL_ID)
             .setSmallIcon(iconId)
@@ -98,4 +164,74 @@ public final class NotificationHelper {
 
     manager.notify(NOTIFICATION_ID, builder.build());
   }
+
+  /***
+   * Queue {@param line} such as name of expiring application. Lines queued in a burst are shown in
+   * one summary notification. Safe to call on any thread.
+   * @param line line of summary
+   */
+  public void enqueue(String line) {
+    debouncer.submit(line);
+  }
+
+  private void onBatch(List<String> lines) {
+    queuedCount += lines.size();
+    pendingLines.addAll(lines);
+    if (postScheduled) return;
+
+    long wait = lastPostedAt + MIN_POST_INTERVAL_MILLIS - System.currentTimeMillis();
+    if (wait <= 0) {
+      postSummary();
+      return;
+    }
+    postScheduled = true;
+    executor.schedule(
+        () -> {
+          postScheduled = false;
+          postSummary();
+        },
+        wait,
+        TimeUnit.MILLISECONDS);
+  }
+
+  private void postSummary() {
+    if (pendingLines.isEmpty()) return;
+    ensureNotificationChannel();
+
+    int count = pendingLines.size();
+    String title =
+        context
+            .getResources()
+            .getQuantityString(R.plurals.notification_summary_title, count, count);
+    NotificationCompat.InboxStyle style =
+        new NotificationCompat.InboxStyle().setBigContentTitle(title);
+    int shown = Math.min(count, MAX_INBOX_LINES);
+    for (int i = 0; i < shown; i++) style.addLine(pendingLines.get(i));
+    if (count > shown)
+      style.setSummaryText(context.getString(R.string.notification_summary_more, count - shown));
+
+    NotificationCompat.Builder builder = getSummaryBuilder();
+    builder
+        .setContentTitle(title)
+        .setContentText(pendingLines.get(0))
+        .setNumber(count)
+        .setStyle(style);
+    NotificationManagerCompat.from(context).notify(SUMMARY_NOTIFICATION_ID, builder.build());
+
+    pendingLines.clear();
+    lastPostedAt = System.currentTimeMillis();
+    postedCount++;
+    Log.d(TAG, "Posted summary{queued=" + queuedCount + ", posted=" + postedCount + "}");
+  }
+
+  private NotificationCompat.Builder getSummaryBuilder() {
+    if (summaryBuilder == null)
+      summaryBuilder =
+          new NotificationCompat.Builder(context, CHANNEL_ID)
+              .setSmallIcon(iconId)
+              .setPriority(NotificationCompat.PRIORITY_DEFAULT)
+              .setOnlyAlertOnce(true)
+              .setAutoCancel(true);
+    return summaryBuilder;
+  }
 }
@@ -29,7 +29,10 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package kr.apptimer.dagger.android;
 
+import android.content.res.Configuration;
 import android.graphics.PixelFormat;
+import android.os.Build;
+import android.util.LongSparseArray;
 import android.view.Gravity;
 import android.view.ViewGroup;
 import android.view.WindowManager;
@@ -42,31 +45,82 @@ import lombok.Getter;
 /***
  * This class stores {@link android.view.WindowManager.LayoutParams} and layout
  * id Also, with {@link javax.inject.Inject} can be injected
+ * Layout params are computed once per display density, orientation and width, then cached.
+ * Width after rotation is not known before it happens, as system bars are excluded from it, so
+ * each orientation is computed on its first use.
+ * Returned params are shared and must not be modified.
  *
  * @author Singlerr
  */
 @Singleton
-@Getter
 public final class OverlayViewModel {
 
-  private final WindowManager.LayoutParams layoutParams;
+  /***
+   * Maximum width of overlay in dp
+   */
+  private static final int MAX_WIDTH_PORTRAIT_DP = 360;
 
-  private int layoutId;
+  private static final int MAX_WIDTH_LANDSCAPE_DP = 420;
+
+  /***
+   * Horizontal space left around overlay in dp
+   */
+  private static final int MARGIN_DP = 16;
+
+  private final LongSparseArray<WindowManager.LayoutParams> layoutParams = new LongSparseArray<>();
+
+  @Getter private final int layoutId;
 
   @Inject
   public OverlayViewModel() {
-    this.layoutParams =
+    this.layoutId = R.layout.overlay_app_expiration;
+  }
+
+  /***
+   * Returns layout params of overlay for {@param configuration}. Does not allocate when params of
+   * the same display were returned before. Must be called on main thread.
+   *
+   * @param configuration current configuration of display
+   * @return shared layout params, must not be modified
+   */
+  public WindowManager.LayoutParams getLayoutParams(Configuration configuration) {
+    long key =
+        keyOf(configuration.densityDpi, configuration.orientation, configuration.screenWidthDp);
+    WindowManager.LayoutParams params = layoutParams.get(key);
+    if (params != null) return params;
+
+    boolean isLandscape = configuration.orientation == Configuration.ORIENTATION_LANDSCAPE;
+    params =
+        createLayoutParams(configuration.densityDpi, isLandscape, configuration.screenWidthDp);
+    layoutParams.put(key, params);
+    return params;
+  }
+
+  private static long keyOf(int densityDpi, int orientation, int screenWidthDp) {
+    return ((long) densityDpi << 32) | ((long) orientation << 16) | (screenWidthDp & 0xFFFF);
+  }
+
+  @SuppressWarnings("deprecation")
+  private static WindowManager.LayoutParams createLayoutParams(
+      int densityDpi, boolean landscape, int screenWidthDp) {
+    int maxWidthDp = landscape ? MAX_WIDTH_LANDSCAPE_DP : MAX_WIDTH_PORTRAIT_DP;
+    int widthDp = Math.min(maxWidthDp, screenWidthDp - MARGIN_DP * 2);
+    int width = Math.round(widthDp * densityDpi / 160f);
+
+    int type =
+        Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+            ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
+            : WindowManager.LayoutParams.TYPE_PHONE;
+    WindowManager.LayoutParams params =
         new WindowManager.LayoutParams(
-            300,
+            width,
             ViewGroup.LayoutParams.WRAP_CONTENT,
-            150,
-            150,
-            WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
+            type,
             WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
                 | WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL
                 | WindowManager.LayoutParams.FLAG_WATCH_OUTSIDE_TOUCH,
             PixelFormat.TRANSLUCENT);
-    this.layoutParams.gravity = Gravity.CENTER;
-    this.layoutId = R.layout.activity_main;
+    params.gravity = Gravity.CENTER;
+    return params;
   }
 }
@@ -0,0 +1,75 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import kr.apptimer.R;
+
+/***
+ * Holds the overlay view of {@link OverlayViewModel} inflated once per process, so showing the
+ * overlay costs no inflation. View is inflated with application context and may be attached by
+ * one window at a time.
+ * Can be injected into other classes by dagger.
+ *
+ * @author Singlerr
+ */
+@Singleton
+public final class OverlayViewPool {
+
+  private final Context context;
+
+  private final OverlayViewModel viewModel;
+
+  private View view;
+
+  @Inject
+  public OverlayViewPool(Context context, OverlayViewModel viewModel) {
+    this.context = context;
+    this.viewModel = viewModel;
+  }
+
+  /***
+   * Returns pooled overlay view, inflating it on first call. Must be called on main thread.
+   *
+   * @return overlay view
+   */
+  public View acquire() {
+    if (view == null)
+      view =
+          LayoutInflater.from(new ContextThemeWrapper(context, R.style.Theme_MyApplication))
+              .inflate(viewModel.getLayoutId(), null);
+    return view;
+  }
+}
@@ -0,0 +1,203 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.util.Log;
+import dagger.Lazy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import kr.apptimer.database.LocalDatabase;
+import kr.apptimer.database.dao.InstalledApplicationDao;
+import kr.apptimer.database.data.InstalledApplication;
+import kr.apptimer.database.utils.InstalledApplicationScanner;
+
+/***
+ * Deletes {@link kr.apptimer.database.data.InstalledApplication} of packages removed while app
+ * was not listening, and cancels their scheduled tasks.
+ * Installed packages are queried once into a hash set and rows are streamed by
+ * {@link InstalledApplicationScanner}, so a sweep costs O(n + m) with n stored rows and m installed
+ * packages. Stale rows are deleted in one transaction.
+ * Install time of rows stored before it was kept is looked up from {@link PackageManager} first.
+ * Can be injected into other classes by dagger.
+ *
+ * @author Singlerr
+ */
+@Singleton
+public final class PackageReconciler {
+
+  private static final String TAG = "PackageReconciler";
+
+  /***
+   * Count of ids bound to one delete statement. SQLite allows 999 variables.
+   */
+  private static final int DELETE_CHUNK_SIZE = 500;
+
+  private final Context context;
+
+  private final Lazy<LocalDatabase> database;
+
+  private final DatabaseExecutor databaseExecutor;
+
+  private final Lazy<TaskScheduler> scheduler;
+
+  private final Lazy<ApplicationRemovalExecutor> removalExecutor;
+
+  @Inject
+  public PackageReconciler(
+      Context context,
+      Lazy<LocalDatabase> database,
+      DatabaseExecutor databaseExecutor,
+      Lazy<TaskScheduler> scheduler,
+      Lazy<ApplicationRemovalExecutor> removalExecutor) {
+    this.context = context;
+    this.removalExecutor = removalExecutor;
+    this.database = database;
+    this.databaseExecutor = databaseExecutor;
+    this.scheduler = scheduler;
+  }
+
+  /***
+   * Run {@link #reconcile()} on write lane of {@link DatabaseExecutor}.
+   * Safe to call on main thread.
+   */
+  public void reconcileAsync() {
+    databaseExecutor.write(this::reconcile);
+  }
+
+  /***
+   * Delete rows of packages no longer installed. Must not be called on main thread.
+   *
+   * @return count of deleted rows, or -1 if installed packages could not be listed
+   */
+  public int reconcile() {
+    long start = System.nanoTime();
+    backfillInstalledTimes();
+    HashSet<String> installed = queryInstalledPackageUris();
+    // Package visibility hides other packages, deleting by partial list would lose every timer
+    if (!installed.contains(toPackageUri(context.getPackageName()))) {
+      Log.w(TAG, "Installed packages are not visible, skipping reconciliation");
+      return -1;
+    }
+
+    InstalledApplicationDao dao = database.get().installedApplicationDao();
+    List<Integer> staleIds = new ArrayList<>();
+    List<String> staleUris = new ArrayList<>();
+    List<String> removedUris = new ArrayList<>();
+    int scanned =
+        InstalledApplicationScanner.scan(
+            dao::findActionablePageAfter,
+            InstalledApplicationScanner.DEFAULT_PAGE_SIZE,
+            application -> {
+              if (installed.contains(application.getPackageUri())) return;
+              // Removed while its removal was due, record outcome instead of forgetting it
+              if (application.getState() != InstalledApplication.STATE_SCHEDULED) {
+                removedUris.add(application.getPackageUri());
+                return;
+              }
+              staleIds.add(application.getId());
+              staleUris.add(application.getPackageUri());
+            });
+    for (String packageUri : removedUris) removalExecutor.get().onPackageRemoved(packageUri);
+
+    if (!staleIds.isEmpty()) {
+      database.get().runInTransaction(
+          () -> {
+            for (int from = 0; from < staleIds.size(); from += DELETE_CHUNK_SIZE)
+              dao.deleteByIds(
+                  staleIds.subList(from, Math.min(from + DELETE_CHUNK_SIZE, staleIds.size())));
+          });
+      for (String packageUri : staleUris) scheduler.get().cancelTask(packageUri);
+    }
+
+    Log.i(
+        TAG,
+        "Reconciled{installed="
+            + installed.size()
+            + ", scanned="
+            + scanned
+            + ", deleted="
+            + staleIds.size()
+            + ", removed="
+            + removedUris.size()
+            + ", took="
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+            + "ms}");
+    return staleIds.size();
+  }
+
+  /***
+   * Set install time of rows stored before database version 7 to first install time of their
+   * package. Deadlines are not changed, durations are derived from them.
+   */
+  private void backfillInstalledTimes() {
+    InstalledApplicationDao dao = database.get().installedApplicationDao();
+    List<InstalledApplication> applications = dao.findWithUnknownInstalledTime();
+    if (applications.isEmpty()) return;
+
+    PackageManager packageManager = context.getPackageManager();
+    List<InstalledApplication> resolved = new ArrayList<>(applications.size());
+    for (InstalledApplication application : applications) {
+      String packageName = Uri.parse(application.getPackageUri()).getSchemeSpecificPart();
+      try {
+        long installedTime = packageManager.getPackageInfo(packageName, 0).firstInstallTime;
+        application.setInstalledTime(installedTime);
+        resolved.add(application);
+      } catch (PackageManager.NameNotFoundException e) {
+        // Removed, deleted by reconciliation
+      }
+    }
+    database.get().runInTransaction(
+        () -> {
+          for (InstalledApplication application : resolved)
+            dao.updateUnknownInstalledTimeById(application.getId(), application.getInstalledTime());
+        });
+    Log.i(TAG, "Backfilled install time of " + resolved.size() + " application(s)");
+  }
+
+  private HashSet<String> queryInstalledPackageUris() {
+    List<ApplicationInfo> applications = context.getPackageManager().getInstalledApplications(0);
+    HashSet<String> packageUris = new HashSet<>(applications.size() * 2);
+    for (ApplicationInfo info : applications) packageUris.add(toPackageUri(info.packageName));
+    return packageUris;
+  }
+
+  private static String toPackageUri(String packageName) {
+    // Same as Intent#getData() of package broadcasts
+    return "package:" + packageName;
+  }
+}
@@ -29,80 +29,84 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package kr.apptimer.dagger.android;
 
-import android.annotation.SuppressLint;
-import android.app.AlarmManager;
-import android.app.PendingIntent;
-import android.content.Context;
-import android.content.Intent;
-import android.os.Build;
-import java.util.Date;
+import android.util.Log;
+import java.util.List;
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import kr.apptimer.dagger.android.task.SerializableTask;
-import kr.apptimer.dagger.android.task.TaskExecutor;
+import kr.apptimer.dagger.android.scheduler.SchedulerBackend;
+import kr.apptimer.dagger.android.task.TaskDescriptor;
+import lombok.Getter;
 
 /***
  * Schedule a task at a specific time(or date) by
- * {@link android.app.AlarmManager}
+ * {@link SchedulerBackend} selected for this build
  *
+ * @see kr.apptimer.dagger.module.SchedulerBackendProvider
  * @author Singlerr
  */
 @Singleton
 public final class TaskScheduler {
 
-  private final Context context;
+  private static final String TAG = "TaskScheduler";
 
-  private final AlarmManager alarmManager;
-
-  @Inject IntentCache cache;
+  @Getter private final SchedulerBackend backend;
 
   @Inject
-  public TaskScheduler(Context context) {
-
-    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
-      throw new IllegalStateException("Only android version >= 23");
-    }
-
-    this.context = context;
-    this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+  public TaskScheduler(SchedulerBackend backend) {
+    this.backend = backend;
   }
 
   /***
-   * Schedule a task at a specific time
+   * Schedule a task at {@link TaskDescriptor#getDeadline()}. Task with the same
+   * {@link TaskDescriptor#getKey()} scheduled before is replaced.
    *
    * @param task
-   *            task
-   * @param time
-   *            time at the task to be executed
+   *            descriptor of task
    */
-  @SuppressLint("NewApi")
-  public void scheduleTask(SerializableTask task, Date time) {
-    Intent intent = new Intent(context, TaskExecutor.class);
-    intent.putExtra(TaskExecutor.TASK_EXECUTOR_BUNDLE, task);
-
-    PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent, 0);
-
-    alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, time.getTime(), pendingIntent);
+  public void scheduleTask(TaskDescriptor task) {
+    backend.schedule(task);
   }
 
   /***
-   * Schedule a task at a specific time
+   * Schedule every task of {@param tasks} with one call to backend
    *
-   * @param packageUri package uri of application to be uninstalled later
+   * @param tasks
+   *            descriptors of tasks
+   */
+  public void scheduleTasks(List<TaskDescriptor> tasks) {
+    backend.scheduleAll(tasks);
+  }
+
+  /***
+   * Cancel a task scheduled for {@param packageUri}
    *
-   * @param task
-   *            task
-   * @param time
-   *            time at the task to be executed
+   * @param packageUri package uri of application
+   * @return true if a pending task was cancelled
    */
-  @SuppressLint("NewApi")
-  public void scheduleTask(String packageUri, SerializableTask task, Date time) {
-    Intent intent = new Intent(context, TaskExecutor.class);
-    intent.putExtra(TaskExecutor.TASK_EXECUTOR_BUNDLE, task);
+  public boolean cancelTask(String packageUri) {
+    return backend.cancel(packageUri);
+  }
 
-    PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent, 0);
+  /***
+   * Returns whether tasks must be scheduled again after reboot
+   *
+   * @return true if tasks are lost on reboot
+   */
+  public boolean needsRestoreOnBoot() {
+    return !backend.isPersistent();
+  }
 
-    alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, time.getTime(), pendingIntent);
-    cache.putCache(packageUri, pendingIntent);
+  /***
+   * Log registration and wakeup counts of backend so that backends can be compared
+   */
+  public void logMetrics() {
+    Log.i(
+        TAG,
+        backend.getClass().getSimpleName()
+            + "{scheduled="
+            + backend.getScheduledCount()
+            + ", wakeups="
+            + backend.getWakeupCount()
+            + "}");
   }
 }
@@ -0,0 +1,403 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android.scheduler;
+
+import android.annotation.SuppressLint;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import kr.apptimer.dagger.android.IntentCache;
+import kr.apptimer.dagger.android.task.DeadlineQueue;
+import kr.apptimer.dagger.android.task.TaskDescriptor;
+import kr.apptimer.dagger.android.task.TaskExecutor;
+import kr.apptimer.database.data.ScheduledAlarm;
+import lombok.Getter;
+import lombok.Setter;
+
+/***
+ * {@link SchedulerBackend} scheduling a task at a specific time(or date) by
+ * {@link android.app.AlarmManager}
+ *
+ * <p>In {@link Mode#COALESCED} mode, pending tasks are kept in a {@link DeadlineQueue} and only
+ * one alarm is armed for the earliest deadline. {@link TaskExecutor} calls
+ * {@link #pollDueTasks()} when it fires, which returns due tasks and re-arms the alarm for the
+ * next deadline. The queue is rebuilt from {@link ScheduledAlarm} table on first use after
+ * process death. A {@link ScheduledAlarm} is deleted only by {@link #onTasksCompleted(List)}, so a
+ * removal polled by a process killed before running it is delivered again.
+ *
+ * <p>With a batch window set by {@link #setBatchWindow(long, TimeUnit)}, the alarm is armed with
+ * {@link AlarmManager#setWindow(int, long, long, PendingIntent)} and every task due within the
+ * window is dispatched by the same wakeup.
+ *
+ * <p>Reminders of {@link TaskDescriptor#TYPE_REMINDER} set by {@link #setReminderLeads(long...)}
+ * are derived from each removal and put into the same {@link DeadlineQueue}, so they share the
+ * single alarm instead of adding one per application. They are not persisted but derived again
+ * when the queue is rebuilt. {@link Mode#PER_TASK} mode schedules removals only.
+ *
+ * @author Singlerr
+ */
+@Singleton
+public final class AlarmManagerBackend implements SchedulerBackend {
+
+  /***
+   * Action of the single alarm armed in {@link Mode#COALESCED} mode
+   */
+  public static final String ACTION_DISPATCH_DEADLINES = "kr.apptimer.action.DISPATCH_DEADLINES";
+
+  /***
+   * Extras carried by alarm of {@link Mode#PER_TASK} mode to detect stale alarms
+   */
+  public static final String EXTRA_REQUEST_CODE = "request_code";
+
+  public static final String EXTRA_GENERATION = "generation";
+
+  /***
+   * Request codes of {@link kr.apptimer.database.data.ScheduledAlarm} are positive
+   */
+  private static final int COALESCED_REQUEST_CODE = -1;
+
+  private static final long DEFAULT_BATCH_WINDOW = TimeUnit.MINUTES.toMillis(5);
+
+  private static final long[] DEFAULT_REMINDER_LEADS = {
+    TimeUnit.HOURS.toMillis(24), TimeUnit.HOURS.toMillis(1), TimeUnit.MINUTES.toMillis(5)
+  };
+
+  private final Context context;
+
+  private final AlarmManager alarmManager;
+
+  private final DeadlineQueue<TaskDescriptor> queue;
+
+  private boolean loaded;
+
+  /***
+   * Deadline of alarm currently armed in {@link Mode#COALESCED} mode. {@link Long#MAX_VALUE} if
+   * no alarm is armed.
+   */
+  private long armedDeadline = Long.MAX_VALUE;
+
+  @Getter @Setter private Mode mode = Mode.COALESCED;
+
+  /***
+   * Tolerance in millis within which deadlines share one wakeup. 0 means exact alarms.
+   */
+  @Getter private long batchWindow = DEFAULT_BATCH_WINDOW;
+
+  /***
+   * Millis before removal when reminders are due
+   */
+  private long[] reminderLeads = DEFAULT_REMINDER_LEADS;
+
+  private long scheduledCount;
+
+  private long wakeupCount;
+
+  @Inject IntentCache cache;
+
+  @Inject
+  public AlarmManagerBackend(Context context) {
+    this.context = context;
+    this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+    this.queue = new DeadlineQueue<>();
+  }
+
+  @SuppressLint("InlinedApi")
+  @Override
+  public void schedule(TaskDescriptor task) {
+    if (mode == Mode.COALESCED) {
+      enqueue(task);
+      return;
+    }
+    String packageUri = task.getPackageUri();
+    // Same alarm survived process death, nothing to do
+    if (cache.isArmed(packageUri, task.getDeadline())) return;
+
+    ScheduledAlarm alarm = cache.record(packageUri, task.getDeadline());
+    Intent intent = new Intent(context, TaskExecutor.class);
+    task.writeTo(intent);
+    intent.putExtra(EXTRA_REQUEST_CODE, alarm.getRequestCode());
+    intent.putExtra(EXTRA_GENERATION, alarm.getGeneration());
+
+    PendingIntent pendingIntent =
+        PendingIntent.getBroadcast(
+            context,
+            alarm.getRequestCode(),
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+    setExact(task.getDeadline(), pendingIntent);
+    cache.putCache(packageUri, pendingIntent);
+    synchronized (this) {
+      scheduledCount++;
+    }
+  }
+
+  /***
+   * Schedule every task of {@param tasks}. In {@link Mode#COALESCED} mode the alarm is re-armed at
+   * most once for the whole batch.
+   *
+   * @param tasks descriptors of tasks
+   */
+  @Override
+  public void scheduleAll(List<TaskDescriptor> tasks) {
+    if (mode != Mode.COALESCED) {
+      SchedulerBackend.super.scheduleAll(tasks);
+      return;
+    }
+    synchronized (this) {
+      ensureLoaded();
+      for (TaskDescriptor task : tasks) {
+        cache.record(task.getPackageUri(), task.getDeadline());
+        put(task);
+      }
+      rearm();
+    }
+  }
+
+  /***
+   * Let deadlines falling within {@param window} be handled by one inexact wakeup. Only applies to
+   * {@link Mode#COALESCED} mode.
+   *
+   * @param window tolerance window, 0 for exact alarms
+   * @param unit unit of {@param window}
+   */
+  public synchronized void setBatchWindow(long window, TimeUnit unit) {
+    if (window < 0) throw new IllegalArgumentException("Batch window must not be negative");
+    this.batchWindow = unit.toMillis(window);
+    // Force re-arming with new policy
+    this.armedDeadline = Long.MAX_VALUE;
+    // Queue may not be rebuilt yet, arming against it empty would cancel the alarm
+    ensureLoaded();
+    rearm();
+  }
+
+  /***
+   * Set when reminders are due before removal. Applies to tasks scheduled afterwards. Only applies
+   * to {@link Mode#COALESCED} mode.
+   *
+   * @param leads millis before removal, none to disable reminders
+   */
+  public synchronized void setReminderLeads(long... leads) {
+    for (long lead : leads)
+      if (lead <= 0) throw new IllegalArgumentException("Reminder lead must be positive");
+    this.reminderLeads = leads.clone();
+  }
+
+  @Override
+  public synchronized boolean cancel(String packageUri) {
+    PendingIntent pendingIntent = cache.removeCache(packageUri);
+    if (pendingIntent != null) {
+      alarmManager.cancel(pendingIntent);
+      pendingIntent.cancel();
+    }
+    ensureLoaded();
+    for (long lead : reminderLeads) queue.remove(TaskDescriptor.reminderKey(packageUri, lead));
+    boolean removed = queue.remove(packageUri) != null;
+    rearm();
+    return removed || pendingIntent != null;
+  }
+
+  /***
+   * Remove and return every task whose deadline has passed, or falls within the batch window, and
+   * re-arm the alarm for the next deadline. Called by {@link TaskExecutor} when the coalesced alarm
+   * fires.
+   *
+   * @return due tasks, earliest first
+   */
+  public synchronized List<TaskDescriptor> pollDueTasks() {
+    wakeupCount++;
+    ensureLoaded();
+    // The armed alarm just fired
+    armedDeadline = Long.MAX_VALUE;
+    long horizon = System.currentTimeMillis() + batchWindow;
+    List<TaskDescriptor> dueTasks = new ArrayList<>();
+    DeadlineQueue.Entry<TaskDescriptor> head;
+    while ((head = queue.peek()) != null && head.getDeadline() <= horizon) {
+      TaskDescriptor task = queue.poll().getValue();
+      // Removal was rescheduled, or falls within this wakeup
+      if (task.getType() == TaskDescriptor.TYPE_REMINDER && !isReminderValid(task, horizon))
+        continue;
+      dueTasks.add(task);
+    }
+    rearm();
+    return dueTasks;
+  }
+
+  /***
+   * Called by {@link TaskExecutor} when alarm of {@link Mode#PER_TASK} mode fired
+   */
+  public synchronized void onTaskFired() {
+    wakeupCount++;
+  }
+
+  /***
+   * Called by {@link TaskExecutor} after handlers of {@param tasks} have run. Deletes stored alarm
+   * of each removal unless it was rescheduled meanwhile. Must not be called on main thread.
+   *
+   * @param tasks completed tasks
+   */
+  public void onTasksCompleted(List<TaskDescriptor> tasks) {
+    for (TaskDescriptor task : tasks) {
+      if (task.getType() != TaskDescriptor.TYPE_REMOVAL) continue;
+      cache.removeCompleted(task.getPackageUri(), task.getDeadline());
+    }
+  }
+
+  @Override
+  public synchronized long getScheduledCount() {
+    return scheduledCount;
+  }
+
+  @Override
+  public synchronized long getWakeupCount() {
+    return wakeupCount;
+  }
+
+  /***
+   * Alarms are cleared on reboot and must be restored by
+   * {@link kr.apptimer.android.receiver.AlarmRestorer}
+   *
+   * @return false
+   */
+  @Override
+  public boolean isPersistent() {
+    return false;
+  }
+
+  private synchronized void enqueue(TaskDescriptor task) {
+    ensureLoaded();
+    cache.record(task.getPackageUri(), task.getDeadline());
+    put(task);
+    rearm();
+  }
+
+  /***
+   * Put {@param task} and its reminders into {@link #queue}. Reminders already past are dropped.
+   */
+  private void put(TaskDescriptor task) {
+    queue.put(task.getKey(), task.getDeadline(), task);
+    if (task.getType() != TaskDescriptor.TYPE_REMOVAL) return;
+
+    long now = System.currentTimeMillis();
+    for (long lead : reminderLeads) {
+      TaskDescriptor reminder =
+          TaskDescriptor.reminder(task.getPackageUri(), task.getDeadline(), lead);
+      if (reminder.getDeadline() > now)
+        queue.put(reminder.getKey(), reminder.getDeadline(), reminder);
+      // Reminder of previous deadline
+      else queue.remove(reminder.getKey());
+    }
+  }
+
+  private boolean isReminderValid(TaskDescriptor reminder, long horizon) {
+    DeadlineQueue.Entry<TaskDescriptor> removal = queue.get(reminder.getPackageUri());
+    return removal != null
+        && removal.getDeadline() == reminder.getRemovalDeadline()
+        && removal.getDeadline() > horizon;
+  }
+
+  /***
+   * Rebuild {@link #queue} from {@link ScheduledAlarm} table once per process
+   */
+  private void ensureLoaded() {
+    if (loaded || mode != Mode.COALESCED) return;
+    loaded = true;
+    for (ScheduledAlarm alarm : cache.getAlarms()) {
+      TaskDescriptor task = TaskDescriptor.removal(alarm.getPackageUri(), alarm.getDeadline());
+      if (!queue.contains(task.getKey())) put(task);
+    }
+  }
+
+  /***
+   * Make the single system alarm match head of {@link #queue}. Does nothing if it already matches,
+   * so scheduling a task behind the head costs no system call.
+   */
+  private void rearm() {
+    DeadlineQueue.Entry<TaskDescriptor> head = queue.peek();
+    long deadline = head == null ? Long.MAX_VALUE : head.getDeadline();
+    if (deadline == armedDeadline) return;
+
+    PendingIntent pendingIntent = createDispatchIntent();
+    if (head == null) {
+      alarmManager.cancel(pendingIntent);
+    } else if (batchWindow > 0) {
+      alarmManager.setWindow(AlarmManager.RTC_WAKEUP, deadline, batchWindow, pendingIntent);
+      scheduledCount++;
+    } else {
+      setExact(deadline, pendingIntent);
+      scheduledCount++;
+    }
+    armedDeadline = deadline;
+  }
+
+  /***
+   * Arm exact alarm which fires in doze too. Android below M has no doze, so a plain exact alarm
+   * does the same there.
+   */
+  private void setExact(long deadline, PendingIntent pendingIntent) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
+      alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, deadline, pendingIntent);
+    else alarmManager.setExact(AlarmManager.RTC_WAKEUP, deadline, pendingIntent);
+  }
+
+  @SuppressLint("InlinedApi")
+  private PendingIntent createDispatchIntent() {
+    Intent intent = new Intent(context, TaskExecutor.class);
+    intent.setAction(ACTION_DISPATCH_DEADLINES);
+    return PendingIntent.getBroadcast(
+        context,
+        COALESCED_REQUEST_CODE,
+        intent,
+        PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+  }
+
+  /***
+   * Decides how {@link AlarmManagerBackend} registers alarms to {@link AlarmManager}
+   *
+   * @author Singlerr
+   */
+  public enum Mode {
+    /***
+     * One alarm per scheduled task
+     */
+    PER_TASK,
+    /***
+     * One alarm for earliest deadline of all scheduled tasks
+     */
+    COALESCED
+  }
+}
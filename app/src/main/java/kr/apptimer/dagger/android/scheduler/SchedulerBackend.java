@@ -0,0 +1,90 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android.scheduler;
+
+import java.util.List;
+import kr.apptimer.dagger.android.task.TaskDescriptor;
+
+/***
+ * Way of executing {@link TaskDescriptor} at its deadline, used by
+ * {@link kr.apptimer.dagger.android.TaskScheduler}. Selected per build by
+ * {@link kr.apptimer.dagger.module.SchedulerBackendProvider}.
+ *
+ * @author Singlerr
+ */
+public interface SchedulerBackend {
+
+  /***
+   * Schedule a task at {@link TaskDescriptor#getDeadline()}. Task with the same
+   * {@link TaskDescriptor#getKey()} scheduled before is replaced.
+   *
+   * @param task descriptor of task
+   */
+  void schedule(TaskDescriptor task);
+
+  /***
+   * Schedule every task of {@param tasks}. Backends override this when a batch can be registered
+   * more cheaply than one task at a time.
+   *
+   * @param tasks descriptors of tasks
+   */
+  default void scheduleAll(List<TaskDescriptor> tasks) {
+    for (TaskDescriptor task : tasks) schedule(task);
+  }
+
+  /***
+   * Cancel a task scheduled for {@param packageUri}
+   *
+   * @param packageUri package uri of application
+   * @return true if a pending task was cancelled
+   */
+  boolean cancel(String packageUri);
+
+  /***
+   * Returns count of registrations made to the system since process start
+   *
+   * @return count of registrations
+   */
+  long getScheduledCount();
+
+  /***
+   * Returns count of times the system woke this application to run tasks since process start
+   *
+   * @return count of wakeups
+   */
+  long getWakeupCount();
+
+  /***
+   * Returns whether scheduled tasks survive reboot without being scheduled again
+   *
+   * @return true if tasks survive reboot
+   */
+  boolean isPersistent();
+}
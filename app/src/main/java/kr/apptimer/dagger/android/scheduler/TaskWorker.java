@@ -0,0 +1,84 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android.scheduler;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import javax.inject.Inject;
+import kr.apptimer.base.InjectApplicationContext;
+import kr.apptimer.dagger.android.task.TaskDescriptor;
+import kr.apptimer.dagger.android.task.TaskRegistry;
+
+/***
+ * Runs {@link TaskDescriptor} enqueued by {@link WorkManagerBackend}
+ *
+ * @author Singlerr
+ */
+public final class TaskWorker extends Worker {
+
+  @Inject TaskRegistry registry;
+
+  @Inject WorkManagerBackend backend;
+
+  public TaskWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+    super(context, workerParams);
+    InjectApplicationContext.getInstance().getContext().inject(this);
+  }
+
+  @NonNull
+  @Override
+  public Result doWork() {
+    Data data = getInputData();
+    TaskDescriptor task =
+        new TaskDescriptor(
+            data.getInt(TaskDescriptor.EXTRA_TASK_TYPE, 0),
+            data.getString(TaskDescriptor.EXTRA_PACKAGE_URI),
+            data.getLong(TaskDescriptor.EXTRA_DEADLINE, 0));
+    backend.onWorkExecuted();
+    return registry.dispatch(task) ? Result.success() : Result.failure();
+  }
+
+  /***
+   * Returns input data of work executing {@param task}
+   *
+   * @param task descriptor of task
+   * @return input data for {@link TaskWorker}
+   */
+  static Data toInputData(TaskDescriptor task) {
+    return new Data.Builder()
+        .putInt(TaskDescriptor.EXTRA_TASK_TYPE, task.getType())
+        .putString(TaskDescriptor.EXTRA_PACKAGE_URI, task.getPackageUri())
+        .putLong(TaskDescriptor.EXTRA_DEADLINE, task.getDeadline())
+        .build();
+  }
+}
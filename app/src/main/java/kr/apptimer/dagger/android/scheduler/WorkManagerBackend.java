@@ -0,0 +1,142 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android.scheduler;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import kr.apptimer.dagger.android.task.TaskDescriptor;
+
+/***
+ * {@link SchedulerBackend} enqueueing a task as unique work of {@link WorkManager}. Work is
+ * persisted by {@link WorkManager}, replaced by name when the same package is scheduled again and
+ * may be deferred and batched by the system. Work due while battery is low waits until it is not,
+ * so that the system can run expirations together with other deferred work.
+ *
+ * @author Singlerr
+ */
+@Singleton
+public final class WorkManagerBackend implements SchedulerBackend {
+
+  private static final String TAG = "WorkManagerBackend";
+
+  private static final String WORK_NAME_PREFIX = "task:";
+
+  private static final String WORK_TAG = "app_timer_task";
+
+  private static final Constraints CONSTRAINTS =
+      new Constraints.Builder().setRequiresBatteryNotLow(true).build();
+
+  private final Context context;
+
+  private long scheduledCount;
+
+  private long wakeupCount;
+
+  @Inject
+  public WorkManagerBackend(Context context) {
+    this.context = context;
+  }
+
+  @Override
+  public void schedule(TaskDescriptor task) {
+    long delay = Math.max(0, task.getDeadline() - System.currentTimeMillis());
+    OneTimeWorkRequest request =
+        new OneTimeWorkRequest.Builder(TaskWorker.class)
+            .setInitialDelay(delay, TimeUnit.MILLISECONDS)
+            .setInputData(TaskWorker.toInputData(task))
+            .setConstraints(CONSTRAINTS)
+            .addTag(WORK_TAG)
+            .build();
+    WorkManager.getInstance(context)
+        .enqueueUniqueWork(getWorkName(task.getKey()), ExistingWorkPolicy.REPLACE, request);
+    synchronized (this) {
+      scheduledCount++;
+    }
+  }
+
+  /***
+   * Blocks on database of {@link WorkManager}, so it must not be called on main thread
+   */
+  @Override
+  public boolean cancel(String packageUri) {
+    WorkManager workManager = WorkManager.getInstance(context);
+    String workName = getWorkName(packageUri);
+    boolean pending = hasPendingWork(workManager, workName);
+    workManager.cancelUniqueWork(workName);
+    return pending;
+  }
+
+  /***
+   * Called by {@link TaskWorker} when work runs
+   */
+  synchronized void onWorkExecuted() {
+    wakeupCount++;
+  }
+
+  @Override
+  public synchronized long getScheduledCount() {
+    return scheduledCount;
+  }
+
+  @Override
+  public synchronized long getWakeupCount() {
+    return wakeupCount;
+  }
+
+  @Override
+  public boolean isPersistent() {
+    return true;
+  }
+
+  private static boolean hasPendingWork(WorkManager workManager, String workName) {
+    try {
+      for (WorkInfo info : workManager.getWorkInfosForUniqueWork(workName).get())
+        if (!info.getState().isFinished()) return true;
+    } catch (ExecutionException e) {
+      Log.w(TAG, "Failed to look up work " + workName, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  private static String getWorkName(String key) {
+    return WORK_NAME_PREFIX + key;
+  }
+}
@@ -0,0 +1,208 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android.task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import lombok.Getter;
+
+/***
+ * Indexed binary min-heap ordering values by deadline. Every entry is identified by a unique key,
+ * so an existing entry can be moved or removed without scanning the heap.
+ *
+ * <p>Insert, update and removal cost O(log n), looking at the earliest deadline costs O(1).
+ *
+ * @param <T> type of value stored with each deadline
+ * @author Singlerr
+ */
+public final class DeadlineQueue<T> {
+
+  private final ArrayList<Entry<T>> heap;
+
+  private final HashMap<String, Entry<T>> index;
+
+  public DeadlineQueue() {
+    this.heap = new ArrayList<>();
+    this.index = new HashMap<>();
+  }
+
+  /***
+   * Insert new entry or move existing entry with same {@param key} to {@param deadline}
+   *
+   * @param key unique key of entry
+   * @param deadline epoch millis when entry becomes due
+   * @param value value stored with entry
+   */
+  public void put(String key, long deadline, T value) {
+    Entry<T> entry = index.get(key);
+    if (entry == null) {
+      entry = new Entry<>(key, deadline, value);
+      entry.position = heap.size();
+      heap.add(entry);
+      index.put(key, entry);
+      siftUp(entry.position);
+      return;
+    }
+    long previous = entry.deadline;
+    entry.deadline = deadline;
+    entry.value = value;
+    if (deadline < previous) siftUp(entry.position);
+    else siftDown(entry.position);
+  }
+
+  /***
+   * Remove entry with {@param key}
+   *
+   * @param key unique key of entry
+   * @return removed entry or null if there was no entry with {@param key}
+   */
+  public Entry<T> remove(String key) {
+    Entry<T> entry = index.remove(key);
+    if (entry == null) return null;
+    removeAt(entry.position);
+    return entry;
+  }
+
+  /***
+   * Returns entry with earliest deadline without removing it
+   *
+   * @return entry with earliest deadline or null if empty
+   */
+  public Entry<T> peek() {
+    return heap.isEmpty() ? null : heap.get(0);
+  }
+
+  /***
+   * Removes and returns entry with earliest deadline
+   *
+   * @return entry with earliest deadline or null if empty
+   */
+  public Entry<T> poll() {
+    if (heap.isEmpty()) return null;
+    Entry<T> head = heap.get(0);
+    index.remove(head.key);
+    removeAt(0);
+    return head;
+  }
+
+  /***
+   * Returns entry with {@param key}
+   *
+   * @param key unique key of entry
+   * @return entry with {@param key} or null
+   */
+  public Entry<T> get(String key) {
+    return index.get(key);
+  }
+
+  public boolean contains(String key) {
+    return index.containsKey(key);
+  }
+
+  public int size() {
+    return heap.size();
+  }
+
+  public boolean isEmpty() {
+    return heap.isEmpty();
+  }
+
+  public void clear() {
+    heap.clear();
+    index.clear();
+  }
+
+  private void removeAt(int position) {
+    int last = heap.size() - 1;
+    if (position != last) {
+      swap(position, last);
+      heap.remove(last);
+      siftDown(position);
+      siftUp(position);
+    } else {
+      heap.remove(last);
+    }
+  }
+
+  private void siftUp(int position) {
+    while (position > 0) {
+      int parent = (position - 1) >>> 1;
+      if (heap.get(parent).deadline <= heap.get(position).deadline) break;
+      swap(parent, position);
+      position = parent;
+    }
+  }
+
+  private void siftDown(int position) {
+    int size = heap.size();
+    while (true) {
+      int left = (position << 1) + 1;
+      if (left >= size) break;
+      int right = left + 1;
+      int smallest =
+          right < size && heap.get(right).deadline < heap.get(left).deadline ? right : left;
+      if (heap.get(position).deadline <= heap.get(smallest).deadline) break;
+      swap(position, smallest);
+      position = smallest;
+    }
+  }
+
+  private void swap(int a, int b) {
+    Entry<T> first = heap.get(a);
+    Entry<T> second = heap.get(b);
+    heap.set(a, second);
+    heap.set(b, first);
+    first.position = b;
+    second.position = a;
+  }
+
+  /***
+   * Single entry of {@link DeadlineQueue}
+   *
+   * @param <T> type of value
+   * @author Singlerr
+   */
+  public static final class Entry<T> {
+
+    @Getter private final String key;
+
+    @Getter private long deadline;
+
+    @Getter private T value;
+
+    private int position;
+
+    private Entry(String key, long deadline, T value) {
+      this.key = key;
+      this.deadline = deadline;
+      this.value = value;
+    }
+  }
+}
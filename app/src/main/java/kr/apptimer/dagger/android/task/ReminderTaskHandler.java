@@ -0,0 +1,89 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android.task;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.net.Uri;
+import dagger.Lazy;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import kr.apptimer.R;
+import kr.apptimer.dagger.android.NotificationHelper;
+
+/***
+ * {@link TaskHandler} of {@link TaskDescriptor#TYPE_REMINDER}. Queues a line to
+ * {@link NotificationHelper}, so reminders due together are shown in one summary.
+ * Can be injected into other classes by dagger.
+ *
+ * @author Singlerr
+ */
+@Singleton
+public final class ReminderTaskHandler implements TaskHandler {
+
+  private final Context context;
+
+  private final Lazy<NotificationHelper> helper;
+
+  @Inject
+  public ReminderTaskHandler(Context context, Lazy<NotificationHelper> helper) {
+    this.context = context;
+    this.helper = helper;
+  }
+
+  @Override
+  public void handle(TaskDescriptor descriptor) {
+    String packageName = Uri.parse(descriptor.getPackageUri()).getSchemeSpecificPart();
+    helper.get().enqueue(formatLine(resolveLabel(packageName), descriptor.getLead()));
+  }
+
+  private String resolveLabel(String packageName) {
+    PackageManager packageManager = context.getPackageManager();
+    try {
+      ApplicationInfo info = packageManager.getApplicationInfo(packageName, 0);
+      return packageManager.getApplicationLabel(info).toString();
+    } catch (PackageManager.NameNotFoundException e) {
+      return packageName;
+    }
+  }
+
+  private String formatLine(String label, long lead) {
+    Resources resources = context.getResources();
+    int hours = (int) TimeUnit.MILLISECONDS.toHours(lead);
+    if (hours > 0)
+      return resources.getQuantityString(R.plurals.reminder_expires_in_hours, hours, label, hours);
+    int minutes = (int) Math.max(1, TimeUnit.MILLISECONDS.toMinutes(lead));
+    return resources.getQuantityString(
+        R.plurals.reminder_expires_in_minutes, minutes, label, minutes);
+  }
+}
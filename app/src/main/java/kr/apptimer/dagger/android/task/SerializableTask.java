@@ -35,8 +35,11 @@ import java.io.Serializable;
  * A serializable substitute class of {@link Runnable} which originally not
  * serializable.
  *
+ * @deprecated Do not use. Serialized closures bloat alarm intents and break across app updates,
+ *     schedule {@link TaskDescriptor} instead
  * @author Singlerr
  */
+@Deprecated
 public interface SerializableTask extends Serializable {
 
   /***
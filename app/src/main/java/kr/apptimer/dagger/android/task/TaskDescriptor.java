@@ -0,0 +1,185 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android.task;
+
+import android.content.Intent;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/***
+ * Compact description of a scheduled task. Carried by alarm as primitive extras instead of a
+ * serialized closure, and executed by the {@link TaskHandler} registered for its type in
+ * {@link TaskRegistry}.
+ *
+ * @author Singlerr
+ */
+@Getter
+public final class TaskDescriptor {
+
+  /***
+   * Request removal of application
+   */
+  public static final int TYPE_REMOVAL = 1;
+
+  /***
+   * Remind user that application is going to be removed
+   */
+  public static final int TYPE_REMINDER = 2;
+
+  /***
+   * Version of extras written by {@link #writeTo(Intent)}. Alarms registered before extras were
+   * versioned carry no version and are read as version 1.
+   */
+  public static final int VERSION = 1;
+
+  public static final String EXTRA_VERSION = "task_version";
+
+  public static final String EXTRA_TASK_TYPE = "task_type";
+
+  public static final String EXTRA_PACKAGE_URI = "package_uri";
+
+  public static final String EXTRA_DEADLINE = "deadline";
+
+  public static final String EXTRA_LEAD = "lead";
+
+  private final int type;
+
+  private final String packageUri;
+
+  private final long deadline;
+
+  /***
+   * Millis between {@link #deadline} and removal of application. 0 for removal itself.
+   */
+  private final long lead;
+
+  @Getter(AccessLevel.NONE)
+  private final String key;
+
+  public TaskDescriptor(int type, String packageUri, long deadline) {
+    this(type, packageUri, deadline, 0);
+  }
+
+  public TaskDescriptor(int type, String packageUri, long deadline, long lead) {
+    this.type = type;
+    this.packageUri = packageUri;
+    this.deadline = deadline;
+    this.lead = lead;
+    this.key = type == TYPE_REMOVAL ? packageUri : keyOf(type, packageUri, lead);
+  }
+
+  /***
+   * Creates descriptor of task removing application of {@param packageUri}
+   *
+   * @param packageUri package uri of application
+   * @param deadline time when application is removed in epoch millis
+   * @return descriptor
+   */
+  public static TaskDescriptor removal(String packageUri, long deadline) {
+    return new TaskDescriptor(TYPE_REMOVAL, packageUri, deadline);
+  }
+
+  /***
+   * Creates descriptor of task reminding removal of application of {@param packageUri}
+   *
+   * @param packageUri package uri of application
+   * @param removalDeadline time when application is removed in epoch millis
+   * @param lead millis before {@param removalDeadline} when reminder is due
+   * @return descriptor
+   */
+  public static TaskDescriptor reminder(String packageUri, long removalDeadline, long lead) {
+    return new TaskDescriptor(TYPE_REMINDER, packageUri, removalDeadline - lead, lead);
+  }
+
+  /***
+   * Returns key of reminder of {@param packageUri} due {@param lead} millis before removal
+   *
+   * @param packageUri package uri of application
+   * @param lead millis before removal
+   * @return key of reminder in {@link DeadlineQueue}
+   */
+  public static String reminderKey(String packageUri, long lead) {
+    return keyOf(TYPE_REMINDER, packageUri, lead);
+  }
+
+  private static String keyOf(int type, String packageUri, long lead) {
+    return type + "/" + lead + "/" + packageUri;
+  }
+
+  /***
+   * Reads descriptor written by {@link #writeTo(Intent)}
+   * Descriptor of unknown type is returned as is, so that {@link TaskRegistry} rejects it.
+   *
+   * @param intent intent of fired alarm
+   * @return descriptor or null if {@param intent} does not carry one of a known version
+   */
+  public static TaskDescriptor readFrom(Intent intent) {
+    if (!intent.hasExtra(EXTRA_TASK_TYPE)) return null;
+    // Registered by a newer version before downgrade, extras may mean something else
+    if (intent.getIntExtra(EXTRA_VERSION, VERSION) > VERSION) return null;
+    return new TaskDescriptor(
+        intent.getIntExtra(EXTRA_TASK_TYPE, 0),
+        intent.getStringExtra(EXTRA_PACKAGE_URI),
+        intent.getLongExtra(EXTRA_DEADLINE, 0),
+        intent.getLongExtra(EXTRA_LEAD, 0));
+  }
+
+  /***
+   * Write this descriptor to {@param intent} as primitive extras
+   *
+   * @param intent intent to be registered as alarm
+   */
+  public void writeTo(Intent intent) {
+    intent.putExtra(EXTRA_VERSION, VERSION);
+    intent.putExtra(EXTRA_TASK_TYPE, type);
+    intent.putExtra(EXTRA_PACKAGE_URI, packageUri);
+    intent.putExtra(EXTRA_DEADLINE, deadline);
+    if (lead != 0) intent.putExtra(EXTRA_LEAD, lead);
+  }
+
+  /***
+   * Returns time when application is removed in epoch millis
+   *
+   * @return removal deadline
+   */
+  public long getRemovalDeadline() {
+    return deadline + lead;
+  }
+
+  /***
+   * Returns key identifying this task in {@link DeadlineQueue}. Key of removal is its package uri,
+   * so removal and its reminders share one timeline without colliding.
+   *
+   * @return unique key of task
+   */
+  public String getKey() {
+    return key;
+  }
+}
@@ -33,22 +33,139 @@ import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import dagger.Lazy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.inject.Inject;
+import kr.apptimer.base.InjectApplicationContext;
+import kr.apptimer.dagger.android.DatabaseExecutor;
+import kr.apptimer.dagger.android.IntentCache;
+import kr.apptimer.dagger.android.scheduler.AlarmManagerBackend;
 
 /***
- * Executes a task reserved at a time by
+ * Executes a task reserved by {@link AlarmManagerBackend} at a time by
  * {@link android.app.AlarmManager#setAndAllowWhileIdle(int, long, PendingIntent)}
+ * Fired alarm carries {@link TaskDescriptor}, which is executed on {@link TaskRuntime} by handler
+ * registered to {@link TaskRegistry}. Main thread only calls {@link #goAsync()}.
+ * Stored alarms of completed tasks are deleted afterwards on write lane, behind writes the handlers
+ * submitted, so a task is never forgotten before its effect is stored.
+ * Waits on write lane and running tasks share one deadline of {@link TaskRuntime#TIMEOUT_MILLIS}
+ * from {@link #goAsync()}. Broadcast is finished when it expires even if work is still queued.
+ * Only {@link AlarmManagerBackend} targets this receiver, work backend runs tasks on its own
+ * worker. Backend is injected lazily so that builds with another backend never create it here.
  *
  * @author Singlerr
  */
 public final class TaskExecutor extends BroadcastReceiver {
 
-  public static final String TASK_EXECUTOR_BUNDLE = "task_executor";
+  private static final String TAG = "TaskExecutor";
+
+  @Inject Lazy<AlarmManagerBackend> scheduler;
+
+  @Inject IntentCache cache;
+
+  @Inject TaskRuntime runtime;
+
+  @Inject DatabaseExecutor databaseExecutor;
+
+  public TaskExecutor() {
+    super();
+    InjectApplicationContext.getInstance().getContext().inject(this);
+  }
 
   @Override
   public void onReceive(Context context, Intent intent) {
-    if (intent.hasExtra(TASK_EXECUTOR_BUNDLE)) {
-      SerializableTask task = (SerializableTask) intent.getSerializableExtra(TASK_EXECUTOR_BUNDLE);
-      task.run();
+    Deadline deadline = new Deadline(goAsync());
+    // Scheduled alarms are looked up in database
+    databaseExecutor.write(
+        () -> {
+          List<TaskDescriptor> tasks = Collections.emptyList();
+          try {
+            tasks = collectDueTasks(intent);
+          } finally {
+            runtime.execute(
+                tasks, deadline.remainingMillis(), completed -> acknowledge(completed, deadline));
+          }
+        });
+  }
+
+  private void acknowledge(List<TaskDescriptor> completed, Deadline deadline) {
+    if (completed.isEmpty()) {
+      deadline.finish();
+      return;
+    }
+    databaseExecutor.write(
+        () -> {
+          try {
+            scheduler.get().onTasksCompleted(completed);
+          } finally {
+            deadline.finish();
+          }
+        });
+  }
+
+  private List<TaskDescriptor> collectDueTasks(Intent intent) {
+    if (AlarmManagerBackend.ACTION_DISPATCH_DEADLINES.equals(intent.getAction())) {
+      return scheduler.get().pollDueTasks();
+    }
+    TaskDescriptor task = TaskDescriptor.readFrom(intent);
+    if (task == null) return Collections.emptyList();
+
+    int requestCode = intent.getIntExtra(AlarmManagerBackend.EXTRA_REQUEST_CODE, 0);
+    int generation = intent.getIntExtra(AlarmManagerBackend.EXTRA_GENERATION, 0);
+    // Alarm was re-scheduled or cancelled after this one was registered
+    if (!cache.isCurrent(requestCode, generation)) return Collections.emptyList();
+
+    scheduler.get().onTaskFired();
+    return Collections.singletonList(task);
+  }
+
+  /***
+   * Finishes pending result of a broadcast once, either when its work is done or when
+   * {@link TaskRuntime#TIMEOUT_MILLIS} passed since it was received
+   *
+   * @author Singlerr
+   */
+  private static final class Deadline implements Runnable {
+
+    private final PendingResult result;
+
+    private final long expiresAt;
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private Deadline(PendingResult result) {
+      this.result = result;
+      this.expiresAt = SystemClock.elapsedRealtime() + TaskRuntime.TIMEOUT_MILLIS;
+      handler.postDelayed(this, TaskRuntime.TIMEOUT_MILLIS);
+    }
+
+    /***
+     * Returns time left until deadline
+     *
+     * @return millis left, 0 if expired
+     */
+    private long remainingMillis() {
+      return Math.max(0, expiresAt - SystemClock.elapsedRealtime());
+    }
+
+    private void finish() {
+      handler.removeCallbacks(this);
+      if (finished.compareAndSet(false, true)) result.finish();
+    }
+
+    @Override
+    public void run() {
+      if (!finished.compareAndSet(false, true)) return;
+      Log.w(TAG, "Finished broadcast before its work after " + TaskRuntime.TIMEOUT_MILLIS + "ms");
+      result.finish();
     }
   }
 }
@@ -27,25 +27,20 @@ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
 (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
 OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
-package kr.apptimer.database.utils;
-
-import androidx.room.TypeConverter;
-import java.util.Date;
+package kr.apptimer.dagger.android.task;
 
 /***
- * Convert class of handling unsupported {@link java.util.Date} type
+ * Executes tasks of one type of {@link TaskDescriptor}
  *
  * @author Singlerr
  */
-public final class DateConverter {
-
-  @TypeConverter
-  public static Date toDate(Long dateLong) {
-    return dateLong == null ? null : new Date(dateLong);
-  }
+@FunctionalInterface
+public interface TaskHandler {
 
-  @TypeConverter
-  public static Long fromDate(Date date) {
-    return date == null ? null : date.getTime();
-  }
+  /***
+   * Execute task described by {@param descriptor}
+   *
+   * @param descriptor descriptor of due task
+   */
+  void handle(TaskDescriptor descriptor);
 }
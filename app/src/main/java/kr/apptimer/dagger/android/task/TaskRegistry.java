@@ -0,0 +1,89 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android.task;
+
+import android.util.Log;
+import java.util.HashMap;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import kr.apptimer.dagger.android.ApplicationRemovalExecutor;
+
+/***
+ * Maps type of {@link TaskDescriptor} to {@link TaskHandler}
+ * Can be injected into other classes by dagger.
+ *
+ * @author Singlerr
+ */
+@Singleton
+public final class TaskRegistry {
+
+  private static final String TAG = "TaskRegistry";
+
+  private final HashMap<Integer, TaskHandler> handlers;
+
+  @Inject
+  public TaskRegistry(
+      ApplicationRemovalExecutor removalExecutor, ReminderTaskHandler reminderHandler) {
+    this.handlers = new HashMap<>();
+    register(
+        TaskDescriptor.TYPE_REMOVAL,
+        descriptor -> removalExecutor.requestRemoval(descriptor.getPackageUri()));
+    register(TaskDescriptor.TYPE_REMINDER, reminderHandler);
+  }
+
+  /***
+   * Register {@param handler} for {@param type}. Replaces handler registered before.
+   *
+   * @param type type of {@link TaskDescriptor}
+   * @param handler handler of tasks of {@param type}
+   */
+  public synchronized void register(int type, TaskHandler handler) {
+    handlers.put(type, handler);
+  }
+
+  /***
+   * Execute {@param descriptor} with handler registered for its type
+   *
+   * @param descriptor descriptor of due task
+   * @return false if there is no handler for type of {@param descriptor}
+   */
+  public boolean dispatch(TaskDescriptor descriptor) {
+    TaskHandler handler;
+    synchronized (this) {
+      handler = handlers.get(descriptor.getType());
+    }
+    if (handler == null) {
+      Log.w(TAG, "No handler for task type " + descriptor.getType());
+      return false;
+    }
+    handler.handle(descriptor);
+    return true;
+  }
+}
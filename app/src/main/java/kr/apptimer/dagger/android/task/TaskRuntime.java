@@ -0,0 +1,258 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android.task;
+
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import kr.apptimer.utils.Consumer;
+
+/***
+ * Runs due {@link TaskDescriptor}(s) on background threads through {@link TaskRegistry}.
+ * Tasks of the same package run one after another, tasks of different packages run concurrently.
+ * A batch that does not finish within time left to the broadcast which delivered it is cancelled,
+ * so that the broadcast can finish in time.
+ * Can be injected into other classes by dagger.
+ *
+ * @author Singlerr
+ */
+@Singleton
+public final class TaskRuntime {
+
+  private static final String TAG = "TaskRuntime";
+
+  /***
+   * Broadcast receivers must finish within 10 seconds of being received
+   */
+  public static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(8);
+
+  private static final int THREADS = 4;
+
+  private final TaskRegistry registry;
+
+  private final ExecutorService executor;
+
+  private final ScheduledExecutorService timer;
+
+  private final AtomicLong completedCount = new AtomicLong();
+
+  private final AtomicLong failedCount = new AtomicLong();
+
+  private final AtomicLong timedOutCount = new AtomicLong();
+
+  private final AtomicLong totalLatencyNanos = new AtomicLong();
+
+  private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+  @Inject
+  public TaskRuntime(TaskRegistry registry) {
+    this.registry = registry;
+    AtomicInteger sequence = new AtomicInteger();
+    ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(
+            THREADS,
+            THREADS,
+            30,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "task-runtime-" + sequence.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    pool.allowCoreThreadTimeOut(true);
+    this.executor = pool;
+    ScheduledThreadPoolExecutor scheduled =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread = new Thread(runnable, "task-runtime-timer");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduled.setRemoveOnCancelPolicy(true);
+    this.timer = scheduled;
+  }
+
+  /***
+   * Run {@param tasks} and call {@param onFinished} once all of them completed, failed or timed
+   * out. Returns immediately.
+   *
+   * @param tasks due tasks
+   * @param timeoutMillis time after which unfinished tasks are cancelled
+   * @param onFinished called exactly once on a background thread with tasks whose handler returned,
+   *     excluding failed and timed out ones
+   */
+  public void execute(
+      List<TaskDescriptor> tasks, long timeoutMillis, Consumer<List<TaskDescriptor>> onFinished) {
+    if (tasks.isEmpty()) {
+      onFinished.accept(Collections.emptyList());
+      return;
+    }
+
+    LinkedHashMap<String, List<TaskDescriptor>> tasksByPackage = new LinkedHashMap<>();
+    for (TaskDescriptor task : tasks) {
+      List<TaskDescriptor> group = tasksByPackage.get(task.getPackageUri());
+      if (group == null) {
+        group = new ArrayList<>();
+        tasksByPackage.put(task.getPackageUri(), group);
+      }
+      group.add(task);
+    }
+
+    AtomicInteger remaining = new AtomicInteger(tasksByPackage.size());
+    AtomicBoolean finished = new AtomicBoolean();
+    List<TaskDescriptor> completed = new ArrayList<>(tasks.size());
+    List<Future<?>> futures = new ArrayList<>(tasksByPackage.size());
+    long submittedAt = System.nanoTime();
+
+    Future<?> timeout =
+        timer.schedule(
+            () -> {
+              if (!finished.compareAndSet(false, true)) return;
+              synchronized (futures) {
+                for (Future<?> future : futures) {
+                  if (future.cancel(true)) timedOutCount.incrementAndGet();
+                }
+              }
+              Log.w(TAG, "Tasks timed out after " + timeoutMillis + "ms");
+              onFinished.accept(snapshot(completed));
+            },
+            timeoutMillis,
+            TimeUnit.MILLISECONDS);
+
+    synchronized (futures) {
+      for (List<TaskDescriptor> group : tasksByPackage.values()) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (TaskDescriptor task : group) {
+                    if (!run(task, submittedAt)) continue;
+                    synchronized (completed) {
+                      completed.add(task);
+                    }
+                  }
+                  if (remaining.decrementAndGet() == 0 && finished.compareAndSet(false, true)) {
+                    timeout.cancel(false);
+                    onFinished.accept(snapshot(completed));
+                  }
+                }));
+      }
+    }
+  }
+
+  private static List<TaskDescriptor> snapshot(List<TaskDescriptor> completed) {
+    synchronized (completed) {
+      return new ArrayList<>(completed);
+    }
+  }
+
+  /***
+   * Dispatch {@param task} to its handler
+   *
+   * @return true if handler returned, or there is no handler to retry with
+   */
+  private boolean run(TaskDescriptor task, long submittedAt) {
+    try {
+      if (registry.dispatch(task)) completedCount.incrementAndGet();
+      else failedCount.incrementAndGet();
+      return true;
+    } catch (RuntimeException e) {
+      failedCount.incrementAndGet();
+      Log.e(TAG, "Task of " + task.getPackageUri() + " failed", e);
+      return false;
+    } finally {
+      long latency = System.nanoTime() - submittedAt;
+      totalLatencyNanos.addAndGet(latency);
+      long max;
+      while (latency > (max = maxLatencyNanos.get())
+          && !maxLatencyNanos.compareAndSet(max, latency)) {}
+    }
+  }
+
+  public long getCompletedCount() {
+    return completedCount.get();
+  }
+
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  public long getTimedOutCount() {
+    return timedOutCount.get();
+  }
+
+  /***
+   * Returns average time from submission to end of a task
+   *
+   * @return average latency in millis
+   */
+  public double getAverageLatencyMillis() {
+    long count = completedCount.get() + failedCount.get();
+    return count == 0 ? 0 : totalLatencyNanos.get() / 1_000_000.0 / count;
+  }
+
+  public long getMaxLatencyMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+  }
+
+  /***
+   * Log completion, failure, timeout and latency metrics
+   */
+  public void logMetrics() {
+    Log.i(
+        TAG,
+        "{completed="
+            + getCompletedCount()
+            + ", failed="
+            + getFailedCount()
+            + ", timedOut="
+            + getTimedOutCount()
+            + ", averageLatencyMillis="
+            + getAverageLatencyMillis()
+            + ", maxLatencyMillis="
+            + getMaxLatencyMillis()
+            + "}");
+  }
+}
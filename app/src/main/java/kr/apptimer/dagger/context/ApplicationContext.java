@@ -33,17 +33,25 @@ import dagger.Component;
 import javax.inject.Singleton;
 import kr.apptimer.android.receiver.AlarmRestorer;
 import kr.apptimer.android.receiver.ApplicationInstallationReceiver;
+import kr.apptimer.android.receiver.ApplicationRemovalReceiver;
+import kr.apptimer.android.receiver.RemovalResultReceiver;
 import kr.apptimer.android.service.AppExpirationOverlayService;
+import kr.apptimer.dagger.android.OverlayViewPool;
+import kr.apptimer.dagger.android.PackageReconciler;
+import kr.apptimer.dagger.android.scheduler.TaskWorker;
+import kr.apptimer.dagger.android.task.TaskExecutor;
 import kr.apptimer.dagger.module.ActivityContextModule;
 import kr.apptimer.dagger.module.ApplicationContextProvider;
 import kr.apptimer.dagger.module.DatabaseProvider;
+import kr.apptimer.dagger.module.SchedulerBackendProvider;
 
 @Singleton
 @Component(
     modules = {
       DatabaseProvider.class,
       ApplicationContextProvider.class,
-      ActivityContextModule.class
+      ActivityContextModule.class,
+      SchedulerBackendProvider.class
     })
 public interface ApplicationContext {
 
@@ -53,6 +61,20 @@ public interface ApplicationContext {
    */
   ActivityContext.Factory activityContextFactory();
 
+  /***
+   * Exposes {@link PackageReconciler} so that stored applications are reconciled on startup
+   *
+   * @return reconciler instance
+   */
+  PackageReconciler packageReconciler();
+
+  /***
+   * Exposes {@link OverlayViewPool} so that overlay view is inflated before first prompt
+   *
+   * @return pool of overlay view
+   */
+  OverlayViewPool overlayViewPool();
+
   /***
    * This tells Dagger that {@link ApplicationInstallationReceiver} requests
    * injection so that fields with {@link javax.inject.Inject} become not null
@@ -61,6 +83,24 @@ public interface ApplicationContext {
    *            receiver instance
    */
   void inject(ApplicationInstallationReceiver receiver);
+
+  /***
+   * This tells Dagger that {@link ApplicationRemovalReceiver} requests
+   * injection so that fields with {@link javax.inject.Inject} become not null
+   *
+   * @param receiver
+   *            receiver instance
+   */
+  void inject(ApplicationRemovalReceiver receiver);
+
+  /***
+   * This tells Dagger that {@link RemovalResultReceiver} requests
+   * injection so that fields with {@link javax.inject.Inject} become not null
+   *
+   * @param receiver
+   *            receiver instance
+   */
+  void inject(RemovalResultReceiver receiver);
   /***
    * This tells Dagger that {@link AppExpirationOverlayService} requests injection
    * so that fields with {@link javax.inject.Inject} become not null
@@ -78,4 +118,22 @@ public interface ApplicationContext {
    *            boot broadcast receiver instance
    */
   void inject(AlarmRestorer restorer);
+
+  /***
+   * This tells Dagger that {@link TaskExecutor} requests injection
+   * so that fields with {@link javax.inject.Inject} become not null
+   *
+   * @param executor
+   *            alarm broadcast receiver instance
+   */
+  void inject(TaskExecutor executor);
+
+  /***
+   * This tells Dagger that {@link TaskWorker} requests injection
+   * so that fields with {@link javax.inject.Inject} become not null
+   *
+   * @param worker
+   *            work manager worker instance
+   */
+  void inject(TaskWorker worker);
 }
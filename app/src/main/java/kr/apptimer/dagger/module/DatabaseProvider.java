@@ -34,7 +34,9 @@ import androidx.room.Room;
 import dagger.Module;
 import dagger.Provides;
 import javax.inject.Singleton;
+import kr.apptimer.dagger.android.DatabaseExecutor;
 import kr.apptimer.database.LocalDatabase;
+import kr.apptimer.database.migration.LocalDatabaseMigrations;
 
 /***
  * Provider of {@link kr.apptimer.database.LocalDatabase}
@@ -45,9 +47,15 @@ import kr.apptimer.database.LocalDatabase;
 @Module
 public final class DatabaseProvider {
 
+  public static final String DATABASE_NAME = "appDatabase";
+
   @Singleton
   @Provides
-  public LocalDatabase provideLocalDatabase(Context context) {
-    return Room.databaseBuilder(context, LocalDatabase.class, "appDatabase").build();
+  public LocalDatabase provideLocalDatabase(Context context, DatabaseExecutor executor) {
+    return Room.databaseBuilder(context, LocalDatabase.class, DATABASE_NAME)
+        .addMigrations(LocalDatabaseMigrations.ALL)
+        .setQueryExecutor(executor.getReadLane())
+        .setTransactionExecutor(executor.getWriteLane())
+        .build();
   }
 }
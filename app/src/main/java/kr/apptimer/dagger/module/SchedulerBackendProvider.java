@@ -0,0 +1,70 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.module;
+
+import dagger.Module;
+import dagger.Provides;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import kr.apptimer.BuildConfig;
+import kr.apptimer.dagger.android.scheduler.AlarmManagerBackend;
+import kr.apptimer.dagger.android.scheduler.SchedulerBackend;
+import kr.apptimer.dagger.android.scheduler.WorkManagerBackend;
+
+/***
+ * Provider of {@link SchedulerBackend}
+ * Backend is chosen by {@code SCHEDULER_BACKEND} build config field, "alarm" or "work".
+ *
+ * @apiNote {@link SchedulerBackend} is singleton
+ * @author Singlerr
+ */
+@Module
+public final class SchedulerBackendProvider {
+
+  public static final String BACKEND_ALARM = "alarm";
+
+  public static final String BACKEND_WORK = "work";
+
+  @Singleton
+  @Provides
+  public SchedulerBackend provideSchedulerBackend(
+      Provider<AlarmManagerBackend> alarmManagerBackend,
+      Provider<WorkManagerBackend> workManagerBackend) {
+    switch (BuildConfig.SCHEDULER_BACKEND) {
+      case BACKEND_ALARM:
+        return alarmManagerBackend.get();
+      case BACKEND_WORK:
+        return workManagerBackend.get();
+      default:
+        throw new IllegalStateException(
+            "Unknown scheduler backend " + BuildConfig.SCHEDULER_BACKEND);
+    }
+  }
+}
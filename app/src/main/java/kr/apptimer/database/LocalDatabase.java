@@ -31,19 +31,27 @@ package kr.apptimer.database;
 
 import androidx.room.Database;
 import androidx.room.RoomDatabase;
-import androidx.room.TypeConverters;
 import kr.apptimer.database.dao.InstalledApplicationDao;
+import kr.apptimer.database.dao.RemovalRequestDao;
+import kr.apptimer.database.dao.ScheduledAlarmDao;
 import kr.apptimer.database.data.InstalledApplication;
-import kr.apptimer.database.utils.DateConverter;
+import kr.apptimer.database.data.RemovalRequest;
+import kr.apptimer.database.data.ScheduledAlarm;
 
 /***
- * Local database only storing
- * {@link kr.apptimer.database.data.InstalledApplication}
+ * Local database storing
+ * {@link kr.apptimer.database.data.InstalledApplication},
+ * {@link kr.apptimer.database.data.ScheduledAlarm} and
+ * {@link kr.apptimer.database.data.RemovalRequest}
+ * Migrations between versions are in
+ * {@link kr.apptimer.database.migration.LocalDatabaseMigrations}
  *
  * @author Singlerr
  */
-@Database(entities = InstalledApplication.class, version = 1)
-@TypeConverters(DateConverter.class)
+@Database(
+    entities = {InstalledApplication.class, ScheduledAlarm.class, RemovalRequest.class},
+    version = 8,
+    exportSchema = true)
 public abstract class LocalDatabase extends RoomDatabase {
 
   /***
@@ -52,4 +60,18 @@ public abstract class LocalDatabase extends RoomDatabase {
    * @return {@link InstalledApplicationDao} instance
    */
   public abstract InstalledApplicationDao installedApplicationDao();
+
+  /***
+   * Returns {@link ScheduledAlarmDao} instance
+   *
+   * @return {@link ScheduledAlarmDao} instance
+   */
+  public abstract ScheduledAlarmDao scheduledAlarmDao();
+
+  /***
+   * Returns {@link RemovalRequestDao} instance
+   *
+   * @return {@link RemovalRequestDao} instance
+   */
+  public abstract RemovalRequestDao removalRequestDao();
 }
@@ -32,7 +32,9 @@ package kr.apptimer.database.dao;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import java.util.List;
 import kr.apptimer.database.data.InstalledApplication;
 
@@ -52,6 +54,36 @@ public interface InstalledApplicationDao {
   @Query("SELECT * FROM installedapplication")
   List<InstalledApplication> findAll();
 
+  /***
+   * Returns at most {@param limit} {@link InstalledApplication} whose id is greater than
+   * {@param lastId}, ordered by id. Used to read table page by page without holding every row.
+   *
+   * @param lastId
+   *            id of last row of previous page, or {@link Integer#MIN_VALUE} for first page
+   * @param limit
+   *            maximum count of rows
+   * @return next page of {@link InstalledApplication}
+   */
+  @Query("SELECT * FROM installedapplication WHERE id > :lastId ORDER BY id LIMIT :limit")
+  List<InstalledApplication> findPageAfter(int lastId, int limit);
+
+  /***
+   * Same as {@link #findPageAfter(int, int)}, but skips {@link InstalledApplication} which needs no
+   * more action
+   *
+   * @param lastId
+   *            id of last row of previous page, or {@link Integer#MIN_VALUE} for first page
+   * @param limit
+   *            maximum count of rows
+   * @return next page of {@link InstalledApplication} not in
+   *     {@link InstalledApplication#STATE_REMOVED}
+   */
+  @Query(
+      "SELECT * FROM installedapplication WHERE id > :lastId AND state != "
+          + InstalledApplication.STATE_REMOVED
+          + " ORDER BY id LIMIT :limit")
+  List<InstalledApplication> findActionablePageAfter(int lastId, int limit);
+
   /***
    * Returns unique {@link InstalledApplication} by {@param name}
    *
@@ -73,14 +105,136 @@ public interface InstalledApplicationDao {
   InstalledApplication findById(int id);
 
   /***
-   * Insert new {@link InstalledApplication} to database Do not insert
-   * {@link InstalledApplication} with same name or same id
+   * Returns unique {@link InstalledApplication} by {@param packageUri}
+   *
+   * @param packageUri
+   *            package uri of {@link InstalledApplication}
+   * @return {@link InstalledApplication} with {@param packageUri}
+   */
+  @Query("SELECT * FROM installedapplication WHERE package_uri = :packageUri LIMIT 1")
+  InstalledApplication findByPackageUri(String packageUri);
+
+  /***
+   * Returns at most {@param limit} scheduled {@link InstalledApplication} whose expiration deadline
+   * is before or at {@param time}, earliest first
+   *
+   * @param time
+   *            upper bound of time in epoch millis (inclusive)
+   * @param limit
+   *            maximum count of rows
+   * @return {@link InstalledApplication}(s) due before {@param time} ordered by deadline
+   */
+  @Query(
+      "SELECT * FROM installedapplication WHERE state = "
+          + InstalledApplication.STATE_SCHEDULED
+          + " AND expiration_deadline <= :time ORDER BY expiration_deadline LIMIT :limit")
+  List<InstalledApplication> findDueBefore(long time, int limit);
+
+  /***
+   * Returns earliest expiration deadline of scheduled {@link InstalledApplication} after
+   * {@param time}
+   *
+   * @param time
+   *            lower bound of time in epoch millis (exclusive)
+   * @return earliest deadline after {@param time} or null if there is none
+   */
+  @Query(
+      "SELECT MIN(expiration_deadline) FROM installedapplication WHERE state = "
+          + InstalledApplication.STATE_SCHEDULED
+          + " AND expiration_deadline > :time")
+  Long findNextDeadlineAfter(long time);
+
+  /***
+   * Returns {@link InstalledApplication}(s) with package uri in {@param packageUris}
+   *
+   * @param packageUris
+   *            package uris of applications, at most 999
+   * @return stored {@link InstalledApplication}(s) of {@param packageUris}
+   */
+  @Query("SELECT * FROM installedapplication WHERE package_uri IN (:packageUris)")
+  List<InstalledApplication> findByPackageUris(List<String> packageUris);
+
+  /***
+   * Returns {@link InstalledApplication}(s) of {@param packageUris} whose deadline counts from last
+   * use and is not being prompted
+   *
+   * @param packageUris
+   *            package uris of applications, at most 999
+   * @return {@link InstalledApplication}(s) with
+   *     {@link InstalledApplication#POLICY_AFTER_LAST_USE}
+   */
+  @Query(
+      "SELECT * FROM installedapplication WHERE package_uri IN (:packageUris) AND policy_type = "
+          + InstalledApplication.POLICY_AFTER_LAST_USE
+          + " AND state IN ("
+          + InstalledApplication.STATE_SCHEDULED
+          + ", "
+          + InstalledApplication.STATE_DEFERRED
+          + ")")
+  List<InstalledApplication> findUsageRelativeByPackageUris(List<String> packageUris);
+
+  /***
+   * Returns {@link InstalledApplication}(s) whose install time is
+   * {@link InstalledApplication#INSTALLED_TIME_UNKNOWN}
+   *
+   * @return {@link InstalledApplication}(s) stored before install time was kept
+   */
+  @Query(
+      "SELECT * FROM installedapplication WHERE app_installed_time = "
+          + InstalledApplication.INSTALLED_TIME_UNKNOWN)
+  List<InstalledApplication> findWithUnknownInstalledTime();
+
+  /***
+   * Returns whether {@link InstalledApplication} with {@param packageUri} exists
+   *
+   * @param packageUri
+   *            package uri of {@link InstalledApplication}
+   * @return true if exists
+   */
+  @Query("SELECT EXISTS(SELECT 1 FROM installedapplication WHERE package_uri = :packageUri)")
+  boolean existsByPackageUri(String packageUri);
+
+  /***
+   * Insert new {@link InstalledApplication} to database. Id is generated.
+   * Ignored if {@link InstalledApplication} with same package uri exists.
    *
    * @param installedApplication
    *            {@link InstalledApplication} to insert
+   * @return generated id or -1 if ignored
    */
-  @Insert
-  void insert(InstalledApplication installedApplication);
+  @Insert(onConflict = OnConflictStrategy.IGNORE)
+  long insert(InstalledApplication installedApplication);
+
+  /***
+   * Update name and expiration deadline of {@link InstalledApplication} with {@param packageUri}
+   *
+   * @param packageUri
+   *            package uri of {@link InstalledApplication}
+   * @param name
+   *            name of application
+   * @param expirationDeadline
+   *            expiration deadline of application in epoch millis
+   * @return count of updated rows
+   */
+  @Query(
+      "UPDATE installedapplication SET app_name = :name, expiration_deadline = :expirationDeadline"
+          + " WHERE package_uri = :packageUri")
+  int updateByPackageUri(String packageUri, String name, long expirationDeadline);
+
+  /***
+   * Insert {@link InstalledApplication}, or update stored one with same package uri
+   *
+   * @param installedApplication
+   *            {@link InstalledApplication} to insert or update
+   */
+  @Transaction
+  default void upsert(InstalledApplication installedApplication) {
+    if (insert(installedApplication) != -1) return;
+    updateByPackageUri(
+        installedApplication.getPackageUri(),
+        installedApplication.getName(),
+        installedApplication.getExpirationDeadline());
+  }
 
   /***
    * Delete existing {@link InstalledApplication} from database.
@@ -92,12 +246,176 @@ public interface InstalledApplicationDao {
   void delete(InstalledApplication installedApplication);
 
   /***
-   * Insert new {@link InstalledApplication} to database Do not insert
-   * {@link InstalledApplication} with same name or same id
+   * Delete {@link InstalledApplication} with {@param packageUri}
+   *
+   * @param packageUri
+   *            package uri of application
+   * @return count of deleted rows
+   */
+  @Query("DELETE FROM installedapplication WHERE package_uri = :packageUri")
+  int deleteByPackageUri(String packageUri);
+
+  /***
+   * Delete {@link InstalledApplication}(s) with {@param ids}
+   *
+   * @param ids
+   *            ids of rows to delete, at most 999
+   * @return count of deleted rows
+   */
+  @Query("DELETE FROM installedapplication WHERE id IN (:ids)")
+  int deleteByIds(List<Integer> ids);
+
+  /***
+   * Set policy and deadline of {@link InstalledApplication} with {@param id} and schedule it again,
+   * unless its removal is being prompted
+   *
+   * @param id
+   *            id of application
+   * @param policyType
+   *            one of POLICY_ constants of {@link InstalledApplication}
+   * @param duration
+   *            time in millis application lasts
+   * @param expirationDeadline
+   *            expiration deadline derived from policy in epoch millis
+   * @return count of updated rows
+   */
+  @Query(
+      "UPDATE installedapplication SET policy_type = :policyType, duration = :duration,"
+          + " expiration_deadline = :expirationDeadline, next_attempt_at = 0, state = "
+          + InstalledApplication.STATE_SCHEDULED
+          + " WHERE id = :id AND state IN ("
+          + InstalledApplication.STATE_SCHEDULED
+          + ", "
+          + InstalledApplication.STATE_DEFERRED
+          + ")")
+  int updatePolicyById(int id, int policyType, long duration, long expirationDeadline);
+
+  /***
+   * Set install time of {@link InstalledApplication} with {@param id} if it is unknown. Deadline is
+   * kept, and duration not set by a policy yet is derived from it.
+   *
+   * @param id
+   *            id of application
+   * @param installedTime
+   *            install time in epoch millis
+   * @return count of updated rows
+   */
+  @Query(
+      "UPDATE installedapplication SET app_installed_time = :installedTime, duration = CASE"
+          + " WHEN duration = 0 THEN MAX(expiration_deadline - :installedTime, 0) ELSE duration"
+          + " END WHERE id = :id AND app_installed_time = "
+          + InstalledApplication.INSTALLED_TIME_UNKNOWN)
+  int updateUnknownInstalledTimeById(int id, long installedTime);
+
+  /***
+   * Move {@link InstalledApplication} with {@param id} to {@param expirationDeadline} and schedule
+   * it again
+   *
+   * @param id
+   *            id of application
+   * @param expirationDeadline
+   *            expiration deadline in epoch millis
+   * @return count of updated rows
+   */
+  @Query(
+      "UPDATE installedapplication SET expiration_deadline = :expirationDeadline,"
+          + " next_attempt_at = 0, state = "
+          + InstalledApplication.STATE_SCHEDULED
+          + " WHERE id = :id")
+  int rescheduleById(int id, long expirationDeadline);
+
+  /***
+   * Set state of {@link InstalledApplication} with {@param packageUri}
+   *
+   * @param packageUri
+   *            package uri of application
+   * @param state
+   *            one of STATE_ constants of {@link InstalledApplication}
+   * @return count of updated rows
+   */
+  @Query("UPDATE installedapplication SET state = :state WHERE package_uri = :packageUri")
+  int updateStateByPackageUri(String packageUri, int state);
+
+  /***
+   * Mark scheduled or deferred {@link InstalledApplication}(s) of {@param packageUris} due
+   *
+   * @param packageUris
+   *            package uris of applications, at most 999
+   * @return count of updated rows
+   */
+  @Query(
+      "UPDATE installedapplication SET state = "
+          + InstalledApplication.STATE_DUE
+          + " WHERE package_uri IN (:packageUris) AND state IN ("
+          + InstalledApplication.STATE_SCHEDULED
+          + ", "
+          + InstalledApplication.STATE_DEFERRED
+          + ")")
+  int markDue(List<String> packageUris);
+
+  /***
+   * Defer removal of {@link InstalledApplication} with {@param packageUri} and count the attempt
+   *
+   * @param packageUri
+   *            package uri of application
+   * @param nextAttemptAt
+   *            time when removal is due again in epoch millis
+   * @return count of updated rows
+   */
+  @Query(
+      "UPDATE installedapplication SET state = "
+          + InstalledApplication.STATE_DEFERRED
+          + ", next_attempt_at = :nextAttemptAt, attempts = attempts + 1"
+          + " WHERE package_uri = :packageUri")
+  int defer(String packageUri, long nextAttemptAt);
+
+  /***
+   * Mark {@link InstalledApplication} with {@param packageUri} removed if its removal was due
+   *
+   * @param packageUri
+   *            package uri of application
+   * @return count of updated rows
+   */
+  @Query(
+      "UPDATE installedapplication SET state = "
+          + InstalledApplication.STATE_REMOVED
+          + " WHERE package_uri = :packageUri AND state != "
+          + InstalledApplication.STATE_SCHEDULED)
+  int markRemoved(String packageUri);
+
+  /***
+   * Delete {@link InstalledApplication} with {@param packageUri} if its removal is not due yet
+   *
+   * @param packageUri
+   *            package uri of application
+   * @return count of deleted rows
+   */
+  @Query(
+      "DELETE FROM installedapplication WHERE package_uri = :packageUri AND state = "
+          + InstalledApplication.STATE_SCHEDULED)
+  int deleteScheduledByPackageUri(String packageUri);
+
+  /***
+   * Delete removed {@link InstalledApplication}(s) of {@param packageUris}, so that reinstalled
+   * applications are tracked again
+   *
+   * @param packageUris
+   *            package uris of applications, at most 999
+   * @return count of deleted rows
+   */
+  @Query(
+      "DELETE FROM installedapplication WHERE package_uri IN (:packageUris) AND state = "
+          + InstalledApplication.STATE_REMOVED)
+  int deleteRemovedByPackageUris(List<String> packageUris);
+
+  /***
+   * Insert new {@link InstalledApplication}(s) to database in one transaction. Ids are generated.
+   * {@link InstalledApplication} with package uri already stored is ignored.
    *
    * @param installedApplications
    *            {@link InstalledApplication}(s) to insert
+   * @return generated ids in order, -1 for ignored ones
    */
-  @Insert
-  void insertAll(InstalledApplication... installedApplications);
+  @Insert(onConflict = OnConflictStrategy.IGNORE)
+  long[] insertAll(InstalledApplication... installedApplications);
 }
@@ -0,0 +1,136 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Update;
+import java.util.List;
+import kr.apptimer.database.data.RemovalRequest;
+
+/***
+ * DAO class of {@link RemovalRequest}
+ *
+ * @author Singlerr
+ */
+@Dao
+public interface RemovalRequestDao {
+
+  /***
+   * Returns unique {@link RemovalRequest} by {@param packageUri}
+   *
+   * @param packageUri
+   *            package uri of application
+   * @return {@link RemovalRequest} with {@param packageUri}
+   */
+  @Query("SELECT * FROM removalrequest WHERE package_uri = :packageUri")
+  RemovalRequest findByPackageUri(String packageUri);
+
+  /***
+   * Returns {@link RemovalRequest} in {@param state} waiting longest
+   *
+   * @param state
+   *            one of STATE_ constants of {@link RemovalRequest}
+   * @return oldest {@link RemovalRequest} in {@param state}, null if none
+   */
+  @Query("SELECT * FROM removalrequest WHERE state = :state ORDER BY updated_at LIMIT 1")
+  RemovalRequest findOldestByState(int state);
+
+  /***
+   * Returns count of {@link RemovalRequest}(s) in {@param state}
+   *
+   * @param state
+   *            one of STATE_ constants of {@link RemovalRequest}
+   * @return count of rows
+   */
+  @Query("SELECT COUNT(*) FROM removalrequest WHERE state = :state")
+  int countByState(int state);
+
+  /***
+   * Insert new {@link RemovalRequest}(s) in one transaction. Requests already queued are ignored.
+   *
+   * @param removalRequests
+   *            {@link RemovalRequest}(s) to insert
+   * @return row ids in order, -1 for ignored ones
+   */
+  @Insert(onConflict = OnConflictStrategy.IGNORE)
+  long[] insertAll(RemovalRequest... removalRequests);
+
+  /***
+   * Move {@link RemovalRequest}(s) of {@param packageUris} in {@param from} state to {@param to}
+   *
+   * @param packageUris
+   *            package uris of applications, at most 995
+   * @param from
+   *            current state
+   * @param to
+   *            new state
+   * @param updatedAt
+   *            time of change in epoch millis
+   * @return count of updated rows
+   */
+  @Query(
+      "UPDATE removalrequest SET state = :to, updated_at = :updatedAt"
+          + " WHERE package_uri IN (:packageUris) AND state = :from")
+  int updateStates(List<String> packageUris, int from, int to, long updatedAt);
+
+  /***
+   * Move every {@link RemovalRequest} in {@param from} state to {@param to}
+   *
+   * @param from
+   *            current state
+   * @param to
+   *            new state
+   * @return count of updated rows
+   */
+  @Query("UPDATE removalrequest SET state = :to WHERE state = :from")
+  int updateAllStates(int from, int to);
+
+  /***
+   * Update existing {@link RemovalRequest}
+   *
+   * @param removalRequest
+   *            {@link RemovalRequest} to update
+   */
+  @Update
+  void update(RemovalRequest removalRequest);
+
+  /***
+   * Delete {@link RemovalRequest} of {@param packageUri}
+   *
+   * @param packageUri
+   *            package uri of application
+   * @return count of deleted rows
+   */
+  @Query("DELETE FROM removalrequest WHERE package_uri = :packageUri")
+  int deleteByPackageUri(String packageUri);
+}
@@ -0,0 +1,107 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import java.util.List;
+import kr.apptimer.database.data.ScheduledAlarm;
+
+/***
+ * DAO class of {@link ScheduledAlarm}
+ *
+ * @author Singlerr
+ */
+@Dao
+public interface ScheduledAlarmDao {
+
+  /***
+   * Returns unique {@link ScheduledAlarm} by {@param packageUri}
+   *
+   * @param packageUri
+   *            package uri of application
+   * @return {@link ScheduledAlarm} with {@param packageUri}
+   */
+  @Query("SELECT * FROM scheduledalarm WHERE package_uri = :packageUri")
+  ScheduledAlarm findByPackageUri(String packageUri);
+
+  /***
+   * Returns unique {@link ScheduledAlarm} by {@param requestCode}
+   *
+   * @param requestCode
+   *            request code(primary key) of {@link ScheduledAlarm}
+   * @return {@link ScheduledAlarm} with {@param requestCode}
+   */
+  @Query("SELECT * FROM scheduledalarm WHERE request_code = :requestCode")
+  ScheduledAlarm findByRequestCode(int requestCode);
+
+  /***
+   * Returns all {@link ScheduledAlarm} ordered by deadline
+   *
+   * @return all {@link ScheduledAlarm}
+   */
+  @Query("SELECT * FROM scheduledalarm ORDER BY deadline")
+  List<ScheduledAlarm> findAll();
+
+  /***
+   * Insert new {@link ScheduledAlarm}. Request code is generated.
+   *
+   * @param alarm
+   *            {@link ScheduledAlarm} to insert
+   * @return generated request code
+   */
+  @Insert
+  long insert(ScheduledAlarm alarm);
+
+  /***
+   * Move alarm of {@param packageUri} to {@param deadline} and increase its generation
+   *
+   * @param packageUri
+   *            package uri of application
+   * @param deadline
+   *            new deadline in epoch millis
+   * @return count of updated rows
+   */
+  @Query(
+      "UPDATE scheduledalarm SET deadline = :deadline, generation = generation + 1"
+          + " WHERE package_uri = :packageUri")
+  int reschedule(String packageUri, long deadline);
+
+  /***
+   * Delete {@link ScheduledAlarm} of {@param packageUri}
+   *
+   * @param packageUri
+   *            package uri of application
+   * @return count of deleted rows
+   */
+  @Query("DELETE FROM scheduledalarm WHERE package_uri = :packageUri")
+  int deleteByPackageUri(String packageUri);
+}
@@ -32,23 +32,79 @@ package kr.apptimer.database.data;
 import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
-import java.util.Date;
 import lombok.Getter;
 import lombok.Setter;
 
 /***
  * Saves information of installed application Information could be: time when
  * application installed, name of application etc.
+ * Indexed by state with expiration deadline and by package uri so that range queries of
+ * {@link kr.apptimer.database.dao.InstalledApplicationDao} do not scan whole table.
+ * Times are stored as epoch millis in primitive columns, so reading and comparing them allocates
+ * nothing per row.
+ * Package uri is unique, so an application is stored at most once.
+ * Removal of application moves {@link #state} from {@link #STATE_SCHEDULED} through
+ * {@link #STATE_DUE} and {@link #STATE_PROMPTED} to {@link #STATE_REMOVED}. A declined prompt moves
+ * it to {@link #STATE_DEFERRED} until {@link #nextAttemptAt}, after which it is due again.
+ * {@link #expirationDeadline} is derived from {@link #policyType} and {@link #duration} by
+ * {@link kr.apptimer.dagger.android.ExpirationPolicyEngine}.
  *
  * @author Singlerr
  */
 @Getter
 @Setter
-@Entity
+@Entity(
+    indices = {
+      @Index({"state", "expiration_deadline"}),
+      @Index(value = "package_uri", unique = true)
+    })
 public final class InstalledApplication {
 
-  @PrimaryKey private int id;
+  /***
+   * Removal is scheduled at {@link #expirationDeadline}
+   */
+  public static final int STATE_SCHEDULED = 0;
+
+  /***
+   * Removal is due and queued to be prompted
+   */
+  public static final int STATE_DUE = 1;
+
+  /***
+   * Uninstall prompt is shown
+   */
+  public static final int STATE_PROMPTED = 2;
+
+  /***
+   * Application was removed after being due. Not acted on anymore.
+   */
+  public static final int STATE_REMOVED = 3;
+
+  /***
+   * Prompt was declined, removal is due again at {@link #nextAttemptAt}
+   */
+  public static final int STATE_DEFERRED = 4;
+
+  /***
+   * Application expires {@link #duration} after it is installed
+   */
+  public static final int POLICY_AFTER_INSTALL = 0;
+
+  /***
+   * Application expires {@link #duration} after it was last used
+   */
+  public static final int POLICY_AFTER_LAST_USE = 1;
+
+  /***
+   * {@link #installedTime} of rows stored before database version 7, until
+   * {@link kr.apptimer.dagger.android.PackageReconciler} looks it up
+   */
+  public static final long INSTALLED_TIME_UNKNOWN = 0;
+
+  @PrimaryKey(autoGenerate = true)
+  private int id;
 
   /***
    * Package uri of application
@@ -64,9 +120,53 @@ public final class InstalledApplication {
   @ColumnInfo(name = "app_name")
   private String name;
   /***
-   * Time when application is newly installed
+   * Time when application is newly installed in epoch millis, or {@link #INSTALLED_TIME_UNKNOWN}
    */
-  @NonNull
   @ColumnInfo(name = "app_installed_time")
-  private Date time;
+  private long installedTime;
+
+  /***
+   * Time when application expires and its removal is due in epoch millis
+   */
+  @ColumnInfo(name = "expiration_deadline", defaultValue = "0")
+  private long expirationDeadline;
+
+  /***
+   * One of POLICY_ constants
+   */
+  @ColumnInfo(name = "policy_type", defaultValue = "0")
+  private int policyType;
+
+  /***
+   * Time in millis application lasts, counted from the time given by {@link #policyType}
+   */
+  @ColumnInfo(name = "duration", defaultValue = "0")
+  private long duration;
+
+  /***
+   * One of STATE_ constants
+   */
+  @ColumnInfo(name = "state", defaultValue = "0")
+  private int state;
+
+  /***
+   * Time when deferred removal is due again in epoch millis, 0 if not deferred
+   */
+  @ColumnInfo(name = "next_attempt_at", defaultValue = "0")
+  private long nextAttemptAt;
+
+  /***
+   * Count of declined or failed uninstall prompts
+   */
+  @ColumnInfo(name = "attempts", defaultValue = "0")
+  private int attempts;
+
+  /***
+   * Returns time when removal of this application is due in epoch millis
+   *
+   * @return {@link #nextAttemptAt} if deferred, {@link #expirationDeadline} otherwise
+   */
+  public long getRemovalDeadline() {
+    return state == STATE_DEFERRED ? nextAttemptAt : expirationDeadline;
+  }
 }
@@ -0,0 +1,97 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.database.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+import lombok.Getter;
+import lombok.Setter;
+
+/***
+ * Saves progress of uninstall requested by
+ * {@link kr.apptimer.dagger.android.ApplicationRemovalExecutor}, so that queued removals and
+ * failures survive process death.
+ *
+ * @author Singlerr
+ */
+@Getter
+@Setter
+@Entity
+public final class RemovalRequest {
+
+  /***
+   * Waiting to be prompted
+   */
+  public static final int STATE_PENDING = 0;
+
+  /***
+   * Uninstall prompt is shown, waiting for result
+   */
+  public static final int STATE_PROMPTED = 1;
+
+  /***
+   * Uninstall failed or was aborted by user
+   */
+  public static final int STATE_FAILED = 2;
+
+  /***
+   * Package uri of application
+   */
+  @PrimaryKey
+  @NonNull
+  @ColumnInfo(name = "package_uri")
+  private String packageUri;
+
+  /***
+   * One of STATE_ constants
+   */
+  @ColumnInfo(name = "state")
+  private int state;
+
+  /***
+   * Count of prompts shown for this request
+   */
+  @ColumnInfo(name = "attempts")
+  private int attempts;
+
+  /***
+   * Time of last state change in epoch millis
+   */
+  @ColumnInfo(name = "updated_at")
+  private long updatedAt;
+
+  /***
+   * Message of last failure, null if none
+   */
+  @ColumnInfo(name = "last_error")
+  private String lastError;
+}
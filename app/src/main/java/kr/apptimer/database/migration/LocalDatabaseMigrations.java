@@ -0,0 +1,192 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.database.migration;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/***
+ * Schema migrations of {@link kr.apptimer.database.LocalDatabase}
+ * Register every migration to {@link #ALL} so that
+ * {@link kr.apptimer.dagger.module.DatabaseProvider} picks it up.
+ *
+ * @author Singlerr
+ */
+public final class LocalDatabaseMigrations {
+
+  /***
+   * 1 -> 2: Index time and package uri of installed application
+   */
+  public static final Migration MIGRATION_1_2 =
+      new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+          database.execSQL(
+              "CREATE INDEX IF NOT EXISTS `index_InstalledApplication_app_installed_time`"
+                  + " ON `InstalledApplication` (`app_installed_time`)");
+          database.execSQL(
+              "CREATE INDEX IF NOT EXISTS `index_InstalledApplication_package_uri`"
+                  + " ON `InstalledApplication` (`package_uri`)");
+        }
+      };
+
+  /***
+   * 2 -> 3: Add table of scheduled alarms
+   */
+  public static final Migration MIGRATION_2_3 =
+      new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+          database.execSQL(
+              "CREATE TABLE IF NOT EXISTS `ScheduledAlarm` (`request_code` INTEGER PRIMARY KEY"
+                  + " AUTOINCREMENT NOT NULL, `package_uri` TEXT NOT NULL, `deadline` INTEGER NOT"
+                  + " NULL, `generation` INTEGER NOT NULL)");
+          database.execSQL(
+              "CREATE UNIQUE INDEX IF NOT EXISTS `index_ScheduledAlarm_package_uri`"
+                  + " ON `ScheduledAlarm` (`package_uri`)");
+        }
+      };
+
+  /***
+   * 3 -> 4: Generate id of installed application and make package uri unique. Only the latest
+   * row of each package uri is kept.
+   */
+  public static final Migration MIGRATION_3_4 =
+      new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+          database.execSQL(
+              "CREATE TABLE IF NOT EXISTS `InstalledApplication_new` (`id` INTEGER PRIMARY KEY"
+                  + " AUTOINCREMENT NOT NULL, `package_uri` TEXT NOT NULL, `app_name` TEXT NOT"
+                  + " NULL, `app_installed_time` INTEGER NOT NULL)");
+          database.execSQL(
+              "INSERT INTO `InstalledApplication_new` (`id`, `package_uri`, `app_name`,"
+                  + " `app_installed_time`) SELECT `id`, `package_uri`, `app_name`,"
+                  + " `app_installed_time` FROM `InstalledApplication` WHERE `id` IN (SELECT"
+                  + " MAX(`id`) FROM `InstalledApplication` GROUP BY `package_uri`)");
+          database.execSQL("DROP TABLE `InstalledApplication`");
+          database.execSQL(
+              "ALTER TABLE `InstalledApplication_new` RENAME TO `InstalledApplication`");
+          database.execSQL(
+              "CREATE INDEX IF NOT EXISTS `index_InstalledApplication_app_installed_time`"
+                  + " ON `InstalledApplication` (`app_installed_time`)");
+          database.execSQL(
+              "CREATE UNIQUE INDEX IF NOT EXISTS `index_InstalledApplication_package_uri`"
+                  + " ON `InstalledApplication` (`package_uri`)");
+        }
+      };
+
+  /***
+   * 4 -> 5: Add table of {@link kr.apptimer.database.data.RemovalRequest}
+   */
+  public static final Migration MIGRATION_4_5 =
+      new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+          database.execSQL(
+              "CREATE TABLE IF NOT EXISTS `RemovalRequest` (`package_uri` TEXT NOT NULL, `state`"
+                  + " INTEGER NOT NULL, `attempts` INTEGER NOT NULL, `updated_at` INTEGER NOT"
+                  + " NULL, `last_error` TEXT, PRIMARY KEY(`package_uri`))");
+        }
+      };
+
+  /***
+   * 5 -> 6: Add removal lifecycle columns to installed application. Existing rows are scheduled.
+   */
+  public static final Migration MIGRATION_5_6 =
+      new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+          database.execSQL(
+              "ALTER TABLE `InstalledApplication` ADD COLUMN `state` INTEGER NOT NULL DEFAULT 0");
+          database.execSQL(
+              "ALTER TABLE `InstalledApplication` ADD COLUMN `next_attempt_at` INTEGER NOT NULL"
+                  + " DEFAULT 0");
+          database.execSQL(
+              "ALTER TABLE `InstalledApplication` ADD COLUMN `attempts` INTEGER NOT NULL DEFAULT"
+                  + " 0");
+        }
+      };
+
+  /***
+   * 6 -> 7: Store expiration deadline apart from install time and index it with state. Install time
+   * held the deadline until now, so it is moved to deadline and install time is left unknown.
+   */
+  public static final Migration MIGRATION_6_7 =
+      new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+          database.execSQL(
+              "ALTER TABLE `InstalledApplication` ADD COLUMN `expiration_deadline` INTEGER NOT"
+                  + " NULL DEFAULT 0");
+          database.execSQL(
+              "UPDATE `InstalledApplication` SET `expiration_deadline` = `app_installed_time`,"
+                  + " `app_installed_time` = 0");
+          database.execSQL("DROP INDEX IF EXISTS `index_InstalledApplication_app_installed_time`");
+          database.execSQL(
+              "CREATE INDEX IF NOT EXISTS `index_InstalledApplication_state_expiration_deadline`"
+                  + " ON `InstalledApplication` (`state`, `expiration_deadline`)");
+        }
+      };
+
+  /***
+   * 7 -> 8: Add expiration policy of installed application. Existing rows expire after install,
+   * lasting as long as their deadline is apart from install time. Rows whose install time is
+   * unknown keep their stored deadline, their duration is derived once install time is looked up.
+   */
+  public static final Migration MIGRATION_7_8 =
+      new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+          database.execSQL(
+              "ALTER TABLE `InstalledApplication` ADD COLUMN `policy_type` INTEGER NOT NULL"
+                  + " DEFAULT 0");
+          database.execSQL(
+              "ALTER TABLE `InstalledApplication` ADD COLUMN `duration` INTEGER NOT NULL DEFAULT"
+                  + " 0");
+          database.execSQL(
+              "UPDATE `InstalledApplication` SET `duration` = MAX(`expiration_deadline` -"
+                  + " `app_installed_time`, 0) WHERE `app_installed_time` != 0");
+        }
+      };
+
+  public static final Migration[] ALL = {
+    MIGRATION_1_2,
+    MIGRATION_2_3,
+    MIGRATION_3_4,
+    MIGRATION_4_5,
+    MIGRATION_5_6,
+    MIGRATION_6_7,
+    MIGRATION_7_8
+  };
+
+  private LocalDatabaseMigrations() {}
+}
@@ -0,0 +1,76 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.database.utils;
+
+import java.util.List;
+import kr.apptimer.database.data.InstalledApplication;
+import kr.apptimer.utils.BiFunction;
+import kr.apptimer.utils.Consumer;
+
+/***
+ * Streams {@link InstalledApplication} page by page using id as key, so only one page is held in
+ * memory no matter how many rows are stored.
+ *
+ * @author Singlerr
+ */
+public final class InstalledApplicationScanner {
+
+  public static final int DEFAULT_PAGE_SIZE = 200;
+
+  private InstalledApplicationScanner() {}
+
+  /***
+   * Visit every {@link InstalledApplication} in id order
+   *
+   * @param pages function returning page after given id with given size, such as
+   *     {@link kr.apptimer.database.dao.InstalledApplicationDao#findPageAfter(int, int)}
+   * @param pageSize count of rows in one page
+   * @param consumer called for each row
+   * @return count of visited rows
+   */
+  public static int scan(
+      BiFunction<Integer, Integer, List<InstalledApplication>> pages,
+      int pageSize,
+      Consumer<InstalledApplication> consumer) {
+    if (pageSize <= 0) throw new IllegalArgumentException("Page size must be positive");
+
+    int lastId = Integer.MIN_VALUE;
+    int visited = 0;
+    while (true) {
+      List<InstalledApplication> page = pages.apply(lastId, pageSize);
+      for (InstalledApplication application : page) {
+        consumer.accept(application);
+        lastId = application.getId();
+      }
+      visited += page.size();
+      if (page.size() < pageSize) return visited;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Collects items submitted in a burst and hands them to a consumer as one batch. A batch is
+ * flushed when no item arrived for {@code quietMillis}, when its first item waited
+ * {@code maxDelayMillis}, or when it holds {@code maxBatchSize} items, whichever comes first.
+ *
+ * @param <T> type of item
+ * @author Singlerr
+ */
+public final class BatchDebouncer<T> {
+
+  private final ScheduledExecutorService executor;
+
+  private final long quietMillis;
+
+  private final long maxDelayMillis;
+
+  private final int maxBatchSize;
+
+  private final Consumer<List<T>> consumer;
+
+  private List<T> batch = new ArrayList<>();
+
+  private long batchStartedAt;
+
+  private ScheduledFuture<?> pendingFlush;
+
+  /***
+   * @param executor executor running {@param consumer}
+   * @param quietMillis time without new item after which batch is flushed
+   * @param maxDelayMillis maximum time first item of batch waits
+   * @param maxBatchSize maximum count of items in one batch
+   * @param consumer called with each batch on {@param executor}
+   */
+  public BatchDebouncer(
+      ScheduledExecutorService executor,
+      long quietMillis,
+      long maxDelayMillis,
+      int maxBatchSize,
+      Consumer<List<T>> consumer) {
+    this.executor = executor;
+    this.quietMillis = quietMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.consumer = consumer;
+  }
+
+  /***
+   * Add {@param item} to current batch. Never blocks on {@code consumer}.
+   *
+   * @param item item to add
+   */
+  public synchronized void submit(T item) {
+    long now = System.nanoTime();
+    if (batch.isEmpty()) batchStartedAt = now;
+    batch.add(item);
+
+    if (pendingFlush != null) pendingFlush.cancel(false);
+    if (batch.size() >= maxBatchSize) {
+      pendingFlush = null;
+      executor.execute(drainTask());
+      return;
+    }
+    long waited = TimeUnit.NANOSECONDS.toMillis(now - batchStartedAt);
+    long delay = Math.max(0, Math.min(quietMillis, maxDelayMillis - waited));
+    pendingFlush = executor.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /***
+   * Hand current batch to consumer on calling thread
+   */
+  public void flush() {
+    drainTask().run();
+  }
+
+  private synchronized Runnable drainTask() {
+    if (batch.isEmpty()) return () -> {};
+    List<T> drained = batch;
+    batch = new ArrayList<>();
+    return () -> consumer.accept(drained);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Records how long named startup sections take, such as {@code Application.onCreate} and the first
+ * call of a receiver. Each section is recorded once, so calling {@link #begin(String)} and
+ * {@link #end(String)} on every call of a receiver only measures the first one.
+ *
+ * @author Singlerr
+ */
+public final class StartupTrace {
+
+  private static final StartupTrace INSTANCE = new StartupTrace();
+
+  private final LinkedHashMap<String, Long> starts = new LinkedHashMap<>();
+
+  private final LinkedHashMap<String, Long> durations = new LinkedHashMap<>();
+
+  /***
+   * Returns trace of this process
+   *
+   * @return process-wide trace
+   */
+  public static StartupTrace getInstance() {
+    return INSTANCE;
+  }
+
+  /***
+   * Start measuring {@param section}. Ignored if it was recorded or started before.
+   *
+   * @param section name of section
+   */
+  public synchronized void begin(String section) {
+    if (durations.containsKey(section) || starts.containsKey(section)) return;
+    starts.put(section, System.nanoTime());
+  }
+
+  /***
+   * Stop measuring {@param section}. Ignored if it was not started.
+   *
+   * @param section name of section
+   * @return true if duration of {@param section} was recorded by this call
+   */
+  public synchronized boolean end(String section) {
+    Long start = starts.remove(section);
+    if (start == null) return false;
+    durations.put(section, System.nanoTime() - start);
+    return true;
+  }
+
+  /***
+   * Returns duration of {@param section}
+   *
+   * @param section name of section
+   * @return duration in nanos, or -1 if not recorded
+   */
+  public synchronized long getDurationNanos(String section) {
+    Long duration = durations.get(section);
+    return duration == null ? -1 : duration;
+  }
+
+  /***
+   * Returns recorded sections in order of completion, e.g. {@code {graph=1.20ms, onCreate=3.45ms}}
+   *
+   * @return recorded sections
+   */
+  public synchronized String dump() {
+    StringBuilder builder = new StringBuilder("{");
+    for (Map.Entry<String, Long> entry : durations.entrySet()) {
+      if (builder.length() > 1) builder.append(", ");
+      double millis = entry.getValue() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+      builder
+          .append(entry.getKey())
+          .append('=')
+          .append(String.format(Locale.ROOT, "%.2f", millis))
+          .append("ms");
+    }
+    return builder.append('}').toString();
+  }
+}
@@ -0,0 +1,94 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import kr.apptimer.database.data.InstalledApplication;
+import org.junit.Test;
+
+public class ExpirationPolicyEngineTest {
+
+  private static final long INSTALLED = 1_700_000_000_000L;
+
+  private static final long DURATION = TimeUnit.DAYS.toMillis(7);
+
+  @Test
+  public void afterInstall_ignoresLastUse() {
+    assertEquals(
+        INSTALLED + DURATION,
+        ExpirationPolicyEngine.computeDeadline(
+            InstalledApplication.POLICY_AFTER_INSTALL, DURATION, INSTALLED, INSTALLED + 1_000));
+  }
+
+  @Test
+  public void afterLastUse_countsFromLatestUse() {
+    long used = INSTALLED + TimeUnit.DAYS.toMillis(2);
+    assertEquals(
+        used + DURATION,
+        ExpirationPolicyEngine.computeDeadline(
+            InstalledApplication.POLICY_AFTER_LAST_USE, DURATION, INSTALLED, used));
+    // Unknown or older use counts from install
+    assertEquals(
+        INSTALLED + DURATION,
+        ExpirationPolicyEngine.computeDeadline(
+            InstalledApplication.POLICY_AFTER_LAST_USE, DURATION, INSTALLED, 0));
+  }
+
+  @Test
+  public void usageSince_knownInstallTime_countsFromInstall() {
+    InstalledApplication application = application(INSTALLED, INSTALLED + DURATION, DURATION);
+    assertEquals(INSTALLED, ExpirationPolicyEngine.getUsageSince(application, INSTALLED + 1_000));
+  }
+
+  @Test
+  public void usageSince_unknownInstallTime_neverStartsAtEpoch() {
+    long now = INSTALLED + TimeUnit.DAYS.toMillis(3);
+    // Deadline counted from a time after install time was lost
+    InstalledApplication application =
+        application(InstalledApplication.INSTALLED_TIME_UNKNOWN, INSTALLED + DURATION, DURATION);
+    assertEquals(INSTALLED, ExpirationPolicyEngine.getUsageSince(application, now));
+    // Migrated row whose duration is not derived yet
+    application = application(InstalledApplication.INSTALLED_TIME_UNKNOWN, INSTALLED, 0);
+    assertEquals(INSTALLED, ExpirationPolicyEngine.getUsageSince(application, now));
+    application = application(InstalledApplication.INSTALLED_TIME_UNKNOWN, now + DURATION, 0);
+    assertEquals(now, ExpirationPolicyEngine.getUsageSince(application, now));
+  }
+
+  private static InstalledApplication application(
+      long installedTime, long expirationDeadline, long duration) {
+    InstalledApplication application = new InstalledApplication();
+    application.setInstalledTime(installedTime);
+    application.setExpirationDeadline(expirationDeadline);
+    application.setDuration(duration);
+    return application;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.dagger.android.task;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class DeadlineQueueTest {
+
+  @Test
+  public void poll_returnsEntriesInDeadlineOrder() {
+    DeadlineQueue<String> queue = new DeadlineQueue<>();
+    Random random = new Random(127);
+    for (int i = 0; i < 1000; i++) {
+      queue.put("package:" + i, random.nextInt(100_000), "task" + i);
+    }
+
+    long previous = Long.MIN_VALUE;
+    while (!queue.isEmpty()) {
+      long deadline = queue.poll().getDeadline();
+      assertTrue(previous <= deadline);
+      previous = deadline;
+    }
+  }
+
+  @Test
+  public void reminders_shareTimelineWithRemoval() {
+    DeadlineQueue<TaskDescriptor> queue = new DeadlineQueue<>();
+    TaskDescriptor removal = TaskDescriptor.removal("package:a", 10_000);
+    queue.put(removal.getKey(), removal.getDeadline(), removal);
+    for (long lead : new long[] {5_000, 1_000}) {
+      TaskDescriptor reminder = TaskDescriptor.reminder("package:a", removal.getDeadline(), lead);
+      queue.put(reminder.getKey(), reminder.getDeadline(), reminder);
+    }
+
+    assertEquals(3, queue.size());
+    TaskDescriptor first = queue.poll().getValue();
+    assertEquals(TaskDescriptor.TYPE_REMINDER, first.getType());
+    assertEquals(5_000, first.getDeadline());
+    assertEquals(removal.getDeadline(), first.getRemovalDeadline());
+    assertEquals(TaskDescriptor.reminderKey("package:a", 1_000), queue.poll().getKey());
+    assertEquals("package:a", queue.poll().getKey());
+  }
+
+  @Test
+  public void put_movesExistingEntry() {
+    DeadlineQueue<String> queue = new DeadlineQueue<>();
+    queue.put("a", 10, "a");
+    queue.put("b", 20, "b");
+    queue.put("b", 5, "b");
+
+    assertEquals(2, queue.size());
+    assertEquals("b", queue.peek().getKey());
+
+    queue.put("b", 30, "b");
+    assertEquals("a", queue.peek().getKey());
+  }
+
+  @Test
+  public void remove_keepsHeapOrdered() {
+    DeadlineQueue<String> queue = new DeadlineQueue<>();
+    for (int i = 0; i < 10; i++) queue.put(String.valueOf(i), i, null);
+
+    assertNotNull(queue.remove("0"));
+    assertNotNull(queue.remove("5"));
+    assertNull(queue.remove("5"));
+
+    assertEquals(8, queue.size());
+    assertEquals("1", queue.poll().getKey());
+    assertFalse(queue.contains("5"));
+  }
+}
@@ -0,0 +1,83 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.database.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import kr.apptimer.database.data.InstalledApplication;
+import org.junit.Test;
+
+public class InstalledApplicationScannerTest {
+
+  private static final int ROW_COUNT = 10_000;
+
+  private static final int PAGE_SIZE = InstalledApplicationScanner.DEFAULT_PAGE_SIZE;
+
+  @Test
+  public void scan_visitsEveryRowOnceWithBoundedPages() {
+    List<InstalledApplication> table = new ArrayList<>();
+    for (int i = 1; i <= ROW_COUNT; i++) {
+      InstalledApplication application = new InstalledApplication();
+      application.setId(i);
+      application.setPackageUri("package:kr.apptimer.test" + i);
+      application.setName("test" + i);
+      application.setInstalledTime(i);
+      application.setExpirationDeadline(i);
+      table.add(application);
+    }
+
+    int[] largestPage = {0};
+    int[] queries = {0};
+    boolean[] visited = new boolean[ROW_COUNT + 1];
+
+    int count =
+        InstalledApplicationScanner.scan(
+            (lastId, limit) -> {
+              queries[0]++;
+              // Rows are stored in id order, id == index + 1
+              int from = Math.max(lastId, 0);
+              List<InstalledApplication> page =
+                  table.subList(Math.min(from, table.size()), Math.min(from + limit, table.size()));
+              largestPage[0] = Math.max(largestPage[0], page.size());
+              return page;
+            },
+            PAGE_SIZE,
+            application -> {
+              assertFalse(visited[application.getId()]);
+              visited[application.getId()] = true;
+            });
+
+    assertEquals(ROW_COUNT, count);
+    assertTrue(largestPage[0] <= PAGE_SIZE);
+    assertEquals(ROW_COUNT / PAGE_SIZE + 1, queries[0]);
+  }
+}
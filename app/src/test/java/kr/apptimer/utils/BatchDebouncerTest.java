@@ -0,0 +1,115 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/***
+ * Fires a burst of 500 package events through {@link BatchDebouncer} the way
+ * {@link kr.apptimer.dagger.android.InstallIngestionPipeline} does and checks that every event is
+ * delivered once in bounded batches. Latency is measured by BatchDebouncerBenchmark of benchmark
+ * module.
+ */
+public class BatchDebouncerTest {
+
+  private static final int EVENTS = 500;
+
+  private static final int PRODUCERS = 4;
+
+  private static final long QUIET_MILLIS = 50;
+
+  private static final long MAX_DELAY_MILLIS = 200;
+
+  private static final int MAX_BATCH_SIZE = 100;
+
+  private ScheduledExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void burst_isDeliveredInFewBatches() throws Exception {
+    CountDownLatch delivered = new CountDownLatch(EVENTS);
+    List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    BatchDebouncer<Integer> debouncer =
+        new BatchDebouncer<>(
+            executor,
+            QUIET_MILLIS,
+            MAX_DELAY_MILLIS,
+            MAX_BATCH_SIZE,
+            batch -> {
+              batches.add(batch);
+              for (int i = 0; i < batch.size(); i++) delivered.countDown();
+            });
+
+    Thread[] producers = new Thread[PRODUCERS];
+    for (int p = 0; p < PRODUCERS; p++) {
+      int producer = p;
+      producers[p] =
+          new Thread(
+              () -> {
+                for (int i = 0; i < EVENTS / PRODUCERS; i++)
+                  debouncer.submit(producer * EVENTS + i);
+              });
+      producers[p].start();
+    }
+    for (Thread producer : producers) producer.join();
+
+    assertTrue(delivered.await(30, TimeUnit.SECONDS));
+
+    HashSet<Integer> seen = new HashSet<>();
+    for (List<Integer> batch : batches) {
+      assertTrue(batch.size() <= MAX_BATCH_SIZE);
+      for (int event : batch) assertTrue(seen.add(event));
+    }
+    assertEquals(EVENTS, seen.size());
+    assertTrue(batches.size() < EVENTS / 10);
+  }
+}
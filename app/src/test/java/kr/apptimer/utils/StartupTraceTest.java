@@ -0,0 +1,63 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class StartupTraceTest {
+
+  @Test
+  public void section_isRecordedOnce() throws InterruptedException {
+    StartupTrace trace = StartupTrace.getInstance();
+    trace.begin("test.first");
+    Thread.sleep(5);
+    assertTrue(trace.end("test.first"));
+    long first = trace.getDurationNanos("test.first");
+    assertTrue(first > 0);
+
+    // Later calls of the same section are not measured
+    trace.begin("test.first");
+    assertFalse(trace.end("test.first"));
+    assertEquals(first, trace.getDurationNanos("test.first"));
+  }
+
+  @Test
+  public void dump_listsRecordedSections() {
+    StartupTrace trace = StartupTrace.getInstance();
+    assertFalse(trace.end("test.notStarted"));
+    assertEquals(-1, trace.getDurationNanos("test.notStarted"));
+
+    trace.begin("test.dump");
+    trace.end("test.dump");
+    assertTrue(trace.dump().matches("\\{.*test\\.dump=\\d+\\.\\d{2}ms.*}"));
+  }
+}
@@ -0,0 +1,132 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.benchmark;
+
+import static org.junit.Assert.*;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import kr.apptimer.android.receiver.AlarmRestorer;
+import kr.apptimer.dagger.android.task.TaskDescriptor;
+import kr.apptimer.database.LocalDatabase;
+import kr.apptimer.database.dao.InstalledApplicationDao;
+import kr.apptimer.database.data.InstalledApplication;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/***
+ * Measures time and allocations of restoring 10,000 stored applications after boot. Paged scan of
+ * {@link AlarmRestorer#collect} is compared with loading whole table at once, as restore did
+ * before. Allocation counts are reported by {@link BenchmarkRule} next to timings.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AlarmRestorerBenchmark {
+
+  private static final int ROW_COUNT = 10_000;
+
+  /***
+   * Every tenth row is due at boot
+   */
+  private static final int DUE_EVERY = 10;
+
+  private static final long NOW = 1_700_000_000_000L;
+
+  @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private LocalDatabase database;
+
+  private InstalledApplicationDao dao;
+
+  @Before
+  public void setUp() {
+    database =
+        Room.inMemoryDatabaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                LocalDatabase.class)
+            .build();
+    dao = database.installedApplicationDao();
+    InstalledApplication[] applications = new InstalledApplication[ROW_COUNT];
+    for (int i = 0; i < ROW_COUNT; i++) {
+      InstalledApplication application = new InstalledApplication();
+      application.setPackageUri("package:kr.apptimer.test" + i);
+      application.setName("test" + i);
+      application.setInstalledTime(NOW - 1);
+      application.setExpirationDeadline(i % DUE_EVERY == 0 ? NOW - i : NOW + i + 1);
+      applications[i] = application;
+    }
+    database.runInTransaction(() -> dao.insertAll(applications));
+  }
+
+  @After
+  public void tearDown() {
+    database.close();
+  }
+
+  @Test
+  public void collect_findsEveryRow() {
+    List<TaskDescriptor> tasks = new ArrayList<>();
+    List<String> outdatedUris = new ArrayList<>();
+    assertEquals(ROW_COUNT, AlarmRestorer.collect(dao, NOW, tasks, outdatedUris));
+    assertEquals(ROW_COUNT / DUE_EVERY, outdatedUris.size());
+    assertEquals(ROW_COUNT - ROW_COUNT / DUE_EVERY, tasks.size());
+  }
+
+  @Test
+  public void restore_paged() {
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      AlarmRestorer.collect(dao, NOW, new ArrayList<>(), new ArrayList<>());
+    }
+  }
+
+  @Test
+  public void restore_wholeTable() {
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      List<TaskDescriptor> tasks = new ArrayList<>();
+      List<String> outdatedUris = new ArrayList<>();
+      for (InstalledApplication application : dao.findAll()) {
+        if (application.getRemovalDeadline() <= NOW) outdatedUris.add(application.getPackageUri());
+        else
+          tasks.add(
+              TaskDescriptor.removal(
+                  application.getPackageUri(), application.getRemovalDeadline()));
+      }
+    }
+  }
+}
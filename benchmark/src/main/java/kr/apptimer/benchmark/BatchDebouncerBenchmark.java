@@ -0,0 +1,89 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import kr.apptimer.utils.BatchDebouncer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/***
+ * Measures a burst of 500 package events submitted to {@link BatchDebouncer} and flushed, from
+ * first submit until the last batch is delivered. Quiet and maximum delay are excluded by flushing.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchDebouncerBenchmark {
+
+  private static final int EVENTS = 500;
+
+  private static final int MAX_BATCH_SIZE = 100;
+
+  @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void burst_submitAndFlush() throws Exception {
+    AtomicReference<CountDownLatch> delivered = new AtomicReference<>();
+    BatchDebouncer<Integer> debouncer =
+        new BatchDebouncer<>(
+            executor,
+            TimeUnit.SECONDS.toMillis(1),
+            TimeUnit.SECONDS.toMillis(5),
+            MAX_BATCH_SIZE,
+            batch -> {
+              CountDownLatch latch = delivered.get();
+              for (int i = 0; i < batch.size(); i++) latch.countDown();
+            });
+
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      CountDownLatch latch = new CountDownLatch(EVENTS);
+      delivered.set(latch);
+      for (int i = 0; i < EVENTS; i++) debouncer.submit(i);
+      debouncer.flush();
+      latch.await();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.List;
+import kr.apptimer.database.data.InstalledApplication;
+import kr.apptimer.database.utils.InstalledApplicationScanner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/***
+ * Measures streaming 10,000 rows page by page through {@link InstalledApplicationScanner}. Pages
+ * come from memory, so only cost of scanning itself is measured.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InstalledApplicationScannerBenchmark {
+
+  private static final int ROW_COUNT = 10_000;
+
+  @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private final List<InstalledApplication> table = new ArrayList<>(ROW_COUNT);
+
+  @Before
+  public void setUp() {
+    for (int i = 1; i <= ROW_COUNT; i++) {
+      InstalledApplication application = new InstalledApplication();
+      application.setId(i);
+      application.setPackageUri("package:kr.apptimer.test" + i);
+      application.setName("test" + i);
+      application.setExpirationDeadline(i);
+      table.add(application);
+    }
+  }
+
+  @Test
+  public void scan() {
+    long[] sum = {0};
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      InstalledApplicationScanner.scan(
+          (lastId, limit) -> {
+            // Rows are stored in id order, id == index + 1
+            int from = Math.min(Math.max(lastId, 0), table.size());
+            return table.subList(from, Math.min(from + limit, table.size()));
+          },
+          InstalledApplicationScanner.DEFAULT_PAGE_SIZE,
+          application -> sum[0] += application.getRemovalDeadline());
+    }
+  }
+}
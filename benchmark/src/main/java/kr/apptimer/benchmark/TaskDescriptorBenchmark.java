@@ -0,0 +1,94 @@
+/*
+Copyright 2022 singlerr
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+   * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+   * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+   * Neither the name of singlerr nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package kr.apptimer.benchmark;
+
+import android.content.Intent;
+import android.os.Parcel;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import kr.apptimer.dagger.android.task.SerializableTask;
+import kr.apptimer.dagger.android.task.TaskDescriptor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/***
+ * Compares round trip of an alarm intent through {@link Parcel} carrying a serialized
+ * {@link SerializableTask} closure with one carrying primitive fields of {@link TaskDescriptor}
+ */
+@SuppressWarnings("deprecation")
+@RunWith(AndroidJUnit4.class)
+public class TaskDescriptorBenchmark {
+
+  private static final String PACKAGE_URI = "package:com.example.application";
+
+  private static final long DEADLINE = 1_700_000_000_000L;
+
+  private static final String EXTRA_TASK = "task";
+
+  @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  @Test
+  public void serializedTask_roundTrip() {
+    String packageUri = PACKAGE_URI;
+    SerializableTask task = () -> packageUri.length();
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      Intent intent = new Intent();
+      intent.putExtra(EXTRA_TASK, task);
+      Intent read = roundTrip(intent);
+      read.setExtrasClassLoader(SerializableTask.class.getClassLoader());
+      read.getSerializableExtra(EXTRA_TASK);
+    }
+  }
+
+  @Test
+  public void descriptor_roundTrip() {
+    TaskDescriptor descriptor = TaskDescriptor.removal(PACKAGE_URI, DEADLINE);
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      Intent intent = new Intent();
+      descriptor.writeTo(intent);
+      TaskDescriptor.readFrom(roundTrip(intent));
+    }
+  }
+
+  private static Intent roundTrip(Intent intent) {
+    Parcel parcel = Parcel.obtain();
+    try {
+      intent.writeToParcel(parcel, 0);
+      parcel.setDataPosition(0);
+      return Intent.CREATOR.createFromParcel(parcel);
+    } finally {
+      parcel.recycle();
+    }
+  }
+}